@@ -0,0 +1,63 @@
+package com.chess.benchmark;
+
+import static com.chess.board.Square.b4;
+import static com.chess.board.Square.c3;
+import static com.chess.board.Square.c4;
+import static com.chess.board.Square.d5;
+import static com.chess.board.Square.f4;
+
+import com.chess.board.Board;
+import com.chess.board.Fen;
+import com.chess.board.Move;
+import com.chess.board.Square;
+
+/**
+ * The positions the benchmarks are run against, with a typical move in each. The middlegame has every piece type
+ * still on the board, the endgame has few pieces and long sliding moves.
+ */
+public enum BenchmarkPosition {
+    Middlegame("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", new Move(c3, d5), "Nd5", c4),
+    Endgame("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", new Move(b4, f4), "Rxf4+", b4);
+
+    private String fenString;
+    private Move move;
+    private String algebraicMove;
+    private Square busySquare;
+
+    private BenchmarkPosition(String fenString, Move move, String algebraicMove, Square busySquare) {
+        this.fenString = fenString;
+        this.move = move;
+        this.algebraicMove = algebraicMove;
+        this.busySquare = busySquare;
+    }
+
+    public String getFenString() {
+        return fenString;
+    }
+
+    public Fen getFen() {
+        return new Fen(fenString);
+    }
+
+    public Board getBoard() {
+        return new Board(getFen());
+    }
+
+    public Move getMove() {
+        return move;
+    }
+
+    /**
+     * the same move as getMove(), in the notation Board.moveAlgebraic() accepts.
+     */
+    public String getAlgebraicMove() {
+        return algebraicMove;
+    }
+
+    /**
+     * a square holding a piece of the side to move with plenty of moves available.
+     */
+    public Square getBusySquare() {
+        return busySquare;
+    }
+}
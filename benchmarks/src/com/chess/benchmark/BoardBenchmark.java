@@ -0,0 +1,61 @@
+package com.chess.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.chess.board.Board;
+import com.chess.board.IllegalMoveException;
+import com.chess.board.Move;
+
+/**
+ * Each benchmark makes the move and takes it back again. After the first invocation the move is already in the move
+ * history, so the history stays the same size and every invocation does the same work: checking legality, building
+ * the new Fen and describing the move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    @Param
+    private BenchmarkPosition position;
+
+    private Board board;
+    private Move move;
+    private String algebraicMove;
+
+    @Setup
+    public void setUp() {
+        board = position.getBoard();
+        move = position.getMove();
+        algebraicMove = position.getAlgebraicMove();
+    }
+
+    @Benchmark
+    public Board move() throws IllegalMoveException {
+        board.move(move);
+        board.undoMove();
+        return board;
+    }
+
+    @Benchmark
+    public Board moveAlgebraic() throws IllegalMoveException {
+        board.moveAlgebraic(algebraicMove);
+        board.undoMove();
+        return board;
+    }
+}
@@ -0,0 +1,63 @@
+package com.chess.benchmark;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.chess.board.Board;
+import com.chess.board.ChessRules;
+import com.chess.board.Color;
+import com.chess.board.Move;
+import com.chess.board.Position;
+import com.chess.board.Square;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessRulesBenchmark {
+
+    @Param
+    private BenchmarkPosition position;
+
+    private ChessRules rules;
+    private Board board;
+    private Square busySquare;
+    private Position boardPosition;
+
+    @Setup
+    public void setUp() {
+        rules = new ChessRules();
+        board = position.getBoard();
+        busySquare = position.getBusySquare();
+        boardPosition = board.getPosition();
+    }
+
+    @Benchmark
+    public Collection<Move> getLegalMovesStartingOn() {
+        return rules.getLegalMovesStartingOn(busySquare, board);
+    }
+
+    @Benchmark
+    public Collection<Move> getLegalMoves() {
+        return rules.getLegalMoves(board);
+    }
+
+    @Benchmark
+    public boolean isInCheck() {
+        return boardPosition.isInCheck(Color.White) | boardPosition.isInCheck(Color.Black);
+    }
+}
@@ -0,0 +1,78 @@
+package com.chess.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.chess.board.Board;
+import com.chess.board.Fen;
+import com.chess.board.IllegalMoveException;
+import com.chess.board.MoveHistory;
+import com.chess.board.PositionTree;
+
+/**
+ * Navigates the move history of a complete game (Morphy's "opera game", 33 half moves).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveHistoryBenchmark {
+
+    private static final String[] GAME = { "e4", "e5", "Nf3", "d6", "d4", "Bg4", "dxe5", "Bxf3", "Qxf3", "dxe5", "Bc4",
+                                          "Nf6", "Qb3", "Qe7", "Nc3", "c6", "Bg5", "b5", "Nxb5", "cxb5", "Bxb5+", "Nbd7",
+                                          "O-O-O", "Rd8", "Rxd7", "Rxd7", "Rd1", "Qe6", "Bxd7+", "Nxd7", "Qb8+", "Nxb8",
+                                          "Rd8#" };
+
+    private Board board;
+    private MoveHistory moveHistory;
+    private Fen middleOfGame;
+
+    @Setup
+    public void setUp() throws IllegalMoveException {
+        board = new Board();
+        for (String move : GAME) {
+            board.moveAlgebraic(move);
+        }
+        moveHistory = board.getMoveHistory();
+
+        for (int i = 0; i < GAME.length / 2; i++) {
+            board.undoMove();
+        }
+        middleOfGame = board.getFen();
+        board.toEndOfMainLine();
+    }
+
+    @Benchmark
+    public PositionTree undoAndRedoWholeGame() {
+        for (int i = 0; i < GAME.length; i++) {
+            board.undoMove();
+        }
+        for (int i = 0; i < GAME.length; i++) {
+            board.redoMove();
+        }
+        return moveHistory.getCurrentPositionTree();
+    }
+
+    @Benchmark
+    public List<PositionTree> getCurrentVariation() {
+        return moveHistory.getCurrentVariation();
+    }
+
+    @Benchmark
+    public PositionTree getPositionTree() {
+        return board.getPositionTree(middleOfGame);
+    }
+}
@@ -0,0 +1,50 @@
+package com.chess.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.chess.board.Board;
+import com.chess.board.Perft;
+
+/**
+ * Searches the whole move tree to a fixed depth with Board.makeMove() and unmakeMove().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerftBenchmark {
+
+    @Param
+    private BenchmarkPosition position;
+
+    @Param("3")
+    private int depth;
+
+    private Perft perft;
+    private Board board;
+
+    @Setup
+    public void setUp() {
+        perft = new Perft();
+        board = position.getBoard();
+    }
+
+    @Benchmark
+    public long perft() {
+        return perft.perft(board, depth);
+    }
+}
@@ -0,0 +1,234 @@
+package com.chess.board;
+
+/**
+ * Precomputed attack masks for working with Position bitboards. Bit n of every mask is Square.values()[n], so the
+ * square index is 8 * file + rank.
+ *
+ * Rook and bishop attacks are looked up with magic bitboards: the blockers on the squares that matter are multiplied
+ * by a per-square magic number, and the top bits of the product index a table of attack masks built when the class is
+ * loaded. The magic numbers were found by a random search, which takes too long to repeat on every start.
+ */
+final class Bitboards {
+
+    // file and rank offsets of the eight ray directions. A step in any direction changes the square index by the
+    // same amount (8 * fileOffset + rankOffset), so rays with a positive step run toward higher bits.
+    private static final int[][] directions = { { 0, 1 }, { 1, 1 }, { 1, 0 }, { 1, -1 }, { 0, -1 }, { -1, -1 }, { -1, 0 },
+                                               { -1, 1 } };
+    private static final int[] rookDirections = { 0, 2, 4, 6 };
+    private static final int[] bishopDirections = { 1, 3, 5, 7 };
+
+    private static final long[] knightAttacks = new long[64];
+    private static final long[] kingAttacks = new long[64];
+    private static final long[][] pawnAttacks = new long[Color.values().length][64];
+    private static final long[][] rays = new long[directions.length][64];
+    private static final long[][] between = new long[64][64];
+    private static final long[][] lines = new long[64][64];
+
+    private static final long[] rookMagicNumbers = {
+        0x0480053081214000L, 0x0040100040002001L, 0x6080200080100008L, 0x0200082004411200L,
+        0x0200102008040200L, 0x1100240028210012L, 0x1080008001000200L, 0x0100020028488100L,
+        0x0001800220400086L, 0x2488804000802004L, 0x0C00801000200081L, 0x201C801000080080L,
+        0x0441000800100500L, 0x00A0808002000400L, 0x000B001401000200L, 0x0001002200409100L,
+        0x0280004020004000L, 0x5110084020004000L, 0x0001050020024011L, 0x0002020020081040L,
+        0x0800050008010010L, 0x81C0808002000400L, 0x8010808001000200L, 0x000006000100408CL,
+        0x0280400080008020L, 0x3000500040002000L, 0x8400200080801000L, 0x0000100080080080L,
+        0x0220080080040080L, 0x0013000300080400L, 0x0000020400100108L, 0x0000248A00004124L,
+        0x4480804000800038L, 0x0040002001804080L, 0x2010882000801000L, 0x0000080282801000L,
+        0x4A48041101000800L, 0x0182001122001814L, 0x000001B204000810L, 0x8001008042000104L,
+        0x058000402000C000L, 0x2000201000424000L, 0x00A0022100430010L, 0x4401001001890020L,
+        0x0A28001100850008L, 0x0020020004008080L, 0x1001220108140010L, 0x8A0400408106000CL,
+        0x0000220100508200L, 0x6040048049003100L, 0x0000200011024300L, 0x0000900100082500L,
+        0x0870040008008080L, 0x0850800600040180L, 0x0006008104480200L, 0x1800040108B04200L,
+        0xD12C201080010341L, 0x0101042040008013L, 0x2801004008200273L, 0x001900614C500009L,
+        0x0202004461500802L, 0x0002001008040102L, 0x10001028B1080604L, 0x000D000040803201L
+    };
+    private static final long[] bishopMagicNumbers = {
+        0x0444086801240010L, 0x0021110C008A8012L, 0x2404812401000003L, 0x6488084104B001A2L,
+        0x0001114000808002L, 0x40D08210C0042000L, 0x0400820802404210L, 0x0000210410040208L,
+        0x02010A10090A1400L, 0x400020040112042CL, 0x8814410440808148L, 0x8804208A00800400L,
+        0x0010108820010086L, 0x0302011028040C00L, 0x2104611808440410L, 0x101084420834020AL,
+        0x201000420202240CL, 0x0062400488084104L, 0xE210000884204100L, 0x0868000488210010L,
+        0x0014021200940208L, 0x0001000210108400L, 0x0004010210820800L, 0x0C01528109009000L,
+        0x8411400004040401L, 0x8010050402040401L, 0x10002C0452080200L, 0x0024040008012004L,
+        0x000184000580E001L, 0x0000820009080200L, 0xC106028100443040L, 0x0022004040804840L,
+        0x8002501104411A08L, 0x88080804D4080120L, 0x040C004808511200L, 0xD005040400080120L,
+        0x1301080200002200L, 0x0882008604310041L, 0x2424041C20048084L, 0x0208270110A04240L,
+        0x00B4020804004210L, 0x0002210420040220L, 0x0400840041000808L, 0x0084002011011800L,
+        0x0000884104003040L, 0x0020040440904A00L, 0x0005080081000414L, 0x0010013049002080L,
+        0x8442020260444404L, 0x0000208404200040L, 0x0080008048080000L, 0x8120000042020013L,
+        0x2410001002022004L, 0x4000887050608202L, 0x0004A12822008000L, 0x2004080094008804L,
+        0x0000470045104008L, 0x0042104202012001L, 0x0040042820841000L, 0x3008200402208844L,
+        0x0000200004104400L, 0x420207E060020222L, 0x0904081290040308L, 0x6460220208002480L
+    };
+    private static final Magic[] rookMagics = new Magic[64];
+    private static final Magic[] bishopMagics = new Magic[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            knightAttacks[square] = offsets(square, new int[][] { { -2, -1 }, { -2, 1 }, { -1, -2 }, { -1, 2 }, { 1, -2 },
+                                                                 { 1, 2 }, { 2, -1 }, { 2, 1 } });
+            kingAttacks[square] = offsets(square, directions);
+            pawnAttacks[Color.White.ordinal()][square] = offsets(square, new int[][] { { -1, 1 }, { 1, 1 } });
+            pawnAttacks[Color.Black.ordinal()][square] = offsets(square, new int[][] { { -1, -1 }, { 1, -1 } });
+
+            for (int direction = 0; direction < directions.length; direction++) {
+                long ray = 0;
+                int file = square / 8 + directions[direction][0];
+                int rank = square % 8 + directions[direction][1];
+                while (onBoard(file, rank)) {
+                    between[square][8 * file + rank] = ray;
+                    ray |= bit(8 * file + rank);
+                    file += directions[direction][0];
+                    rank += directions[direction][1];
+                }
+                rays[direction][square] = ray;
+            }
+        }
+
+        for (int square = 0; square < 64; square++) {
+            for (int direction = 0; direction < directions.length; direction++) {
+                long ray = rays[direction][square];
+                long line = ray | rays[(direction + 4) % directions.length][square] | bit(square);
+                while (ray != 0) {
+                    lines[square][Long.numberOfTrailingZeros(ray)] = line;
+                    ray &= ray - 1;
+                }
+            }
+        }
+
+        for (int square = 0; square < 64; square++) {
+            rookMagics[square] = new Magic(square, rookDirections, rookMagicNumbers[square]);
+            bishopMagics[square] = new Magic(square, bishopDirections, bishopMagicNumbers[square]);
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    private static long offsets(int square, int[][] offsets) {
+        long result = 0;
+        for (int[] offset : offsets) {
+            int file = square / 8 + offset[0];
+            int rank = square % 8 + offset[1];
+            if (onBoard(file, rank)) {
+                result |= bit(8 * file + rank);
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean onBoard(int file, int rank) {
+        return file >= 0 && file < 8 && rank >= 0 && rank < 8;
+    }
+
+    static long bit(int square) {
+        return 1L << square;
+    }
+
+    static long knightAttacks(int square) {
+        return knightAttacks[square];
+    }
+
+    static long kingAttacks(int square) {
+        return kingAttacks[square];
+    }
+
+    /**
+     * the squares a pawn of the given color standing on the square attacks. Read the other way round, these are the
+     * squares that enemy pawns attacking the square would have to stand on.
+     */
+    static long pawnAttacks(Color color, int square) {
+        return pawnAttacks[color.ordinal()][square];
+    }
+
+    static long rookAttacks(int square, long occupied) {
+        return rookMagics[square].attacks(occupied);
+    }
+
+    static long bishopAttacks(int square, long occupied) {
+        return bishopMagics[square].attacks(occupied);
+    }
+
+    static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * the squares strictly between the two squares if they share a rank, file or diagonal, otherwise 0.
+     */
+    static long between(int from, int to) {
+        return between[from][to];
+    }
+
+    /**
+     * the whole rank, file or diagonal running through both squares, or 0 if they do not share one.
+     */
+    static long line(int from, int to) {
+        return lines[from][to];
+    }
+
+    // walks the rays one blocker at a time; only used to fill the magic tables
+    private static long slide(int square, long occupied, int[] slideDirections) {
+        long result = 0;
+        for (int direction : slideDirections) {
+            long ray = rays[direction][square];
+            long blockers = ray & occupied;
+            if (blockers != 0) {
+                int step = 8 * directions[direction][0] + directions[direction][1];
+                int blocker = step > 0 ? Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+                ray ^= rays[direction][blocker];
+            }
+            result |= ray;
+        }
+
+        return result;
+    }
+
+    /**
+     * The attack table of one slider on one square. Only blockers on the mask can change the attacks: a piece on the
+     * last square of a ray is attacked whether or not it is occupied.
+     */
+    private static final class Magic {
+
+        private final long mask;
+        private final long magic;
+        private final int shift;
+        private final long[] table;
+
+        Magic(int square, int[] slideDirections, long magic) {
+            long relevant = 0;
+            for (int direction : slideDirections) {
+                long ray = rays[direction][square];
+                while (ray != 0) {
+                    int next = Long.numberOfTrailingZeros(ray);
+                    if (rays[direction][next] != 0) {
+                        relevant |= bit(next);
+                    }
+                    ray &= ray - 1;
+                }
+            }
+            mask = relevant;
+            shift = 64 - Long.bitCount(mask);
+
+            // fill in the attacks for every subset of the mask. A slider always attacks at least one square, so an
+            // empty entry is 0
+            table = new long[1 << Long.bitCount(mask)];
+            long blockers = 0;
+            do {
+                int index = (int) ((blockers * magic) >>> shift);
+                long attacks = slide(square, blockers, slideDirections);
+                if (table[index] != 0 && table[index] != attacks) {
+                    throw new IllegalStateException("bad magic number for square " + square);
+                }
+                table[index] = attacks;
+                blockers = (blockers - mask) & mask;
+            } while (blockers != 0);
+            this.magic = magic;
+        }
+
+        long attacks(long occupied) {
+            return table[(int) (((occupied & mask) * magic) >>> shift)];
+        }
+    }
+}
@@ -9,7 +9,6 @@ import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 
 import static com.chess.board.Color.Black;
@@ -17,7 +16,6 @@ import static com.chess.board.Color.White;
 import static com.chess.board.File.*;
 import static com.chess.board.PieceType.*;
 import static com.chess.board.Rank.eighth;
-import static com.chess.board.Rank.first;
 import static com.chess.board.Side.Kingside;
 import static com.chess.board.Square.*;
 import static com.chess.board.ECO.A00;
@@ -32,6 +30,9 @@ public class Board implements MoveHistoryListener, Serializable, BoardGenerator
 
     private transient List<BoardListener> boardListeners = new ArrayList<BoardListener>();
 
+    // positions reached by makeMove() that have not been unmade yet, most recent last
+    private transient List<Fen> searchFens = new ArrayList<Fen>();
+
     public Board() {
         this(MoveHistory.getDefaultFen());
     }
@@ -57,42 +58,16 @@ public class Board implements MoveHistoryListener, Serializable, BoardGenerator
     }
 
     public void undoMove() {
+        assertNoSearchMoves("undo a move");
         moveHistory.undoMove();
     }
 
     public PositionTree getPositionTree(Fen position) {
-        PositionTree start = getMoveHistory().getInitialPosition();
-        int diff = start.getFen().getHalfMoveDifferenceTo(position);
-        if (diff < 0)
-            return null;
-
-        Collection<PositionTree> positions = new ArrayList<PositionTree>();
-        searchRecursive(diff, start, positions);
-
-        for (PositionTree tree : positions) {
-            if (tree.getFen().equals(position))
-                return tree;
-        }
-
-        return null;
-    }
-
-    private void searchRecursive(int counter, PositionTree position, Collection<PositionTree> positions) {
-        if (counter == 0) {
-            positions.add(position);
-            return;
-        }
-
-        List<PositionTree> variations = position.getVariations();
-        if (variations.size() == 0)
-            return;
-
-        for (PositionTree variation : variations) {
-            searchRecursive(counter - 1, variation, positions);
-        }
+        return moveHistory.getPositionTree(position);
     }
 
     public void redoMove() {
+        assertNoSearchMoves("redo a move");
         moveHistory.redoMove();
     }
 
@@ -104,219 +79,115 @@ public class Board implements MoveHistoryListener, Serializable, BoardGenerator
         return rules.isLegal(move, this);
     }
 
+    /**
+     * plays a move given in algebraic notation. An annotation after the move ("!", "?!", "+/-"...) is added to the
+     * move as a NAG.
+     */
     public void moveAlgebraic(String moveString) throws IllegalMoveException {
-        final String initialString = moveString;
-        try {
-            StrippedMoveString strippedString = stripMoveString(moveString);
-            moveString = strippedString.getMoveString();
-
-            Move move;
-            if (moveString.startsWith("O") || moveString.startsWith("0")) {
-                if (moveString.length() == 5) {
-                    Rank firstRank = first.fromPerspective(getTurn());
-                    move = new Move(Square.getSquare(e, firstRank), Square.getSquare(c, firstRank));
-                }
-                else {
-                    Rank firstRank = first.fromPerspective(getTurn());
-                    move = new Move(Square.getSquare(e, firstRank), Square.getSquare(g, firstRank));
-                }
-            }
-            else {
-                Piece piece = parsePiece(moveString.charAt(0));
-                Square endSquare = parseEndSquare(moveString);
-
-                if (piece.getPieceType() == Pawn) {
-                    File pawnStartFile = File.valueOf(String.valueOf(moveString.charAt(0)));
-                    Square startSquare = Square.getSquare(
-                            pawnStartFile,
-                            endSquare.getRank().getRelativeRank(-1 * getTurn().multiplier()));
-                    if (getPieceAt(startSquare) == null)
-                        startSquare = startSquare.getRelativeSquare(0, -1 * getTurn().multiplier());
-                    move = new Move(startSquare, endSquare);
-                    if (endSquare.getRank().fromPerspective(getTurn()) == eighth) {
-                        Piece promotionPiece = parsePiece(moveString.charAt(moveString.length() - 1));
-                        move.setPromotion(Promotion.valueOf(promotionPiece.getPieceType().toString()));
-                    }
-                }
-                else {
-                    move = chooseMove(getCandidateMoves(piece, endSquare), moveString.charAt(1), moveString);
-                }
-            }
-
-            move(move);
-            PositionTree currentMove = getMoveHistory().getCurrentPositionTree();
-            for (NAG nag : strippedString) {
-                currentMove.addNAG(nag);
+        // the parser picks the move out of the legal moves, so it is not checked again
+        playLegalMove(MoveEncoding.decode(SanParser.parse(moveString, getPosition(), rules.getLegalMoveList(this))));
+
+        int moveEnd = SanParser.getMoveEnd(moveString);
+        if (moveEnd < moveString.length()) {
+            NAG nag = NAG.getNAGForDescription(moveString.substring(moveEnd).trim());
+            if (nag != null) {
+                getMoveHistory().getCurrentPositionTree().addNAG(nag);
             }
         }
-        catch (RuntimeException re) {
-            throw new RuntimeException("failed token: \"" + initialString + "\"", re);
-        }
     }
 
-    private Move chooseMove(List<Move> candidateMoves, char differentiator, String moveString) throws IllegalMoveException {
-        if (candidateMoves.size() == 0)
-            throw new IllegalMoveException(moveString + " is not a legal move. " + getFen());
-
-        if (candidateMoves.size() == 1)
-            return candidateMoves.get(0);
-
-        Move firstMove = candidateMoves.get(0);
-        Move secondMove = candidateMoves.get(1);
-        if (Character.isLetter(differentiator)) {
-            if (firstMove.getStartSquare().getFile().toString().charAt(0) == differentiator)
-                return firstMove;
-            else
-                return secondMove;
-        }
-        else if (firstMove.getStartSquare().getRank().number() == differentiator - '0') {
-            return firstMove;
-        }
-        else {
-            return secondMove;
-        }
-    }
-
-    private List<Move> getCandidateMoves(Piece piece, Square endSquare) {
-        List<Move> result = new ArrayList<Move>();
-        for (Move move : getLegalMovesEndingOn(endSquare)) {
-            if (getPieceAt(move.getStartSquare()) == piece) {
-                result.add(move);
-            }
-        }
-
-        return result;
+    public Board move(Move move) throws IllegalMoveException {
+        assertNoSearchMoves("play " + move);
+        rules.assertLegal(move, this);
+        return playLegalMove(move);
     }
 
-    private Piece parsePiece(char pieceChar) {
-        switch (pieceChar) {
-            case 'K':
-                return Piece.getPiece(getTurn(), King);
-            case 'R':
-                return Piece.getPiece(getTurn(), Rook);
-            case 'N':
-                return Piece.getPiece(getTurn(), Knight);
-            case 'B':
-                return Piece.getPiece(getTurn(), Bishop);
-            case 'Q':
-                return Piece.getPiece(getTurn(), Queen);
-            default:
-                return Piece.getPiece(getTurn(), Pawn);
+    /**
+     * plays the move at the index in the rules' legal move list, in the order the rules generate them. The move comes
+     * out of the legal moves, so it is not checked again; a game stored as move indexes is replayed with this.
+     */
+    public Board moveByIndex(int index) throws IllegalMoveException {
+        MoveList moves = rules.getLegalMoveList(this);
+        if (index < 0 || index >= moves.size()) {
+            throw new IllegalMoveException("move " + index + " of " + moves.size() + " legal moves");
         }
+        return playLegalMove(MoveEncoding.decode(moves.get(index)));
     }
 
-    private Square parseEndSquare(String moveString) {
-        if (moveString.length() < 4 && Character.isDigit(moveString.charAt(1))) {
-            return Square.valueOf(moveString.substring(0, 2));
-        }
+    /**
+     * plays a move already known to be one of the legal moves from the rules, adding it to the move history like
+     * move() but without checking it again.
+     */
+    Board playLegalMove(Move move) {
+        assertNoSearchMoves("play " + move);
 
-        int capture = moveString.indexOf('x');
-        if (capture > 0) {
-            return Square.valueOf(moveString.substring(capture + 1, capture + 3));
-        }
-        else {
-            try {
-                if (moveString.length() >= 5) {
-                    try {
-                        // see if this is long algebraic notation
-                        return Square.valueOf(moveString.substring(3, 5));
-                    }
-                    catch (IllegalArgumentException iae) {
-                        // do nothing, drop through to standard case
-                    }
-                }
+        // the description is worked out when it is first read, so replaying a game does not pay for it
+        moveHistory.addMove(move, createFen(move), rules);
 
-                // > 90% of the cases fit here
-                return Square.valueOf(moveString.substring(1, 3));
-            }
-            catch (IllegalArgumentException iae) {
-                // this happens when there are two pieces that can move to the same square and they must
-                // be differentiated.
-                return Square.valueOf(moveString.substring(2, 4));
+        // mate and draws are only looked for when someone is listening for them
+        if (hasBoardListeners()) {
+            if (rules.isCheckMate(this)) {
+                fireMateEvent();
             }
-        }
-    }
-
-    private StrippedMoveString stripMoveString(String moveString) {
-        List<NAG> nags = new ArrayList<NAG>();
-        for (NAG nag : NAG.values()) {
-            if (nag.getDescription().length() > 0 && moveString.contains(nag.getDescription())) {
-                moveString = moveString.replace(nag.getDescription(), "");
-                nags.add(nag);
+            else {
+                DrawType draw = rules.getDrawType(this);
+                if (draw != null) {
+                    fireDrawEvent(draw);
+                }
             }
         }
 
-        moveString = moveString.replace("+", "");
-        moveString = moveString.replace("#", "");
-        return new StrippedMoveString(moveString, nags);
+        return this;
     }
 
-    public Board move(Move move) throws IllegalMoveException {
-        rules.assertLegal(move, this);
-
-        Fen newFen = createFen(move);
-        String moveDescription = getPartialMoveDescription(move);
-        Color nextTurn = getTurn().getOppositeColor();
-        boolean isMate = rules.isCheckMate(new Board(newFen));
-
-        if (isMate)
-            moveDescription += "#";
-        else if (newFen.getPosition().isInCheck(nextTurn))
-            moveDescription += "+";
-
-        moveHistory.addMove(move, newFen, moveDescription);
+    /**
+     * plays the move on the board for searching. Unlike move() the move is not checked, described or added to the
+     * move history and no listeners are told, so it must be one of the legal moves from the rules. The position, turn,
+     * castling rights and legal moves all follow the search move until unmakeMove() takes it back; the move history
+     * stays where it was.
+     */
+    public void makeMove(Move move) {
+        searchFens.add(createFen(move));
+    }
 
-        if (isMate) {
-            fireMateEvent();
-        }
-        else {
-            DrawType draw = rules.getDrawType(this);
-            if (draw != null) {
-                fireDrawEvent(draw);
-            }
+    /**
+     * takes back the last move played with makeMove(), restoring the board to exactly where it was.
+     */
+    public void unmakeMove() {
+        if (searchFens.isEmpty()) {
+            throw new IllegalStateException("there is no search move to unmake");
         }
+        searchFens.remove(searchFens.size() - 1);
+    }
 
-        return this;
+    // the move history must not change under search moves, or unmakeMove() would no longer lead back to it
+    private void assertNoSearchMoves(String action) {
+        if (!searchFens.isEmpty()) {
+            throw new IllegalStateException("cannot " + action + " until the search moves are unmade");
+        }
     }
 
     private Fen createFen(Move move) {
-        int totalFullMoves = getFen().getFullMoveCount();
-        if (getTurn() == Black)
-            totalFullMoves++;
-        int totalHalfMovesToDraw = getFen().getHalfMovesSinceLastPawnMoveOrCapture();
-        Square enPassantSquare = null;
-        final Piece piece = getPosition().get(move.getStartSquare());
-        if (piece.getPieceType() == Pawn) {
-            int rankDiff = Math.abs(move.getStartSquare().getRank().ordinal() - move.getEndSquare().getRank().ordinal());
-            if (rankDiff == 2) {
-                enPassantSquare = move.getEndSquare().getRelativeSquare(0, -getTurn().multiplier());
-            }
+        return getFen().afterMove(move, rules.move(move, getPosition()));
+    }
 
-            totalHalfMovesToDraw = 0;
-        }
-        else {
-            totalHalfMovesToDraw++;
+    /**
+     * returns the algebraic description of a legal move from the board's position, with its move number and any check
+     * or mate sign ("12.Nbd2", "Qh5#").
+     */
+    String getMoveDescription(Move move) {
+        String description = getPartialMoveDescription(move);
+        makeMove(move);
+        try {
+            if (rules.isCheckMate(this))
+                return description + "#";
+            else if (isCheck())
+                return description + "+";
+            return description;
         }
-
-        if (getPosition().get(move.getEndSquare()) != null) {
-            totalHalfMovesToDraw = 0;
+        finally {
+            unmakeMove();
         }
-
-        Fen result = Fen.buildPartialFenFromPosition(rules.move(move, getPosition()));
-        result = result.setCanWhiteCastleKingside(getFen().canWhiteCastleKingside() && move.getStartSquare() != h1
-                                                  && move.getStartSquare() != e1);
-        result = result.setCanWhiteCastleQueenside(getFen().canWhiteCastleQueenside() && move.getStartSquare() != a1
-                                                   && move.getStartSquare() != e1);
-        result = result.setCanBlackCastleKingside(getFen().canBlackCastleKingside() && move.getStartSquare() != h8
-                                                  && move.getStartSquare() != e8);
-        result = result.setCanBlackCastleQueenside(getFen().canBlackCastleQueenside() && move.getStartSquare() != a8
-                                                   && move.getStartSquare() != e8);
-        result = result.setTurn(getTurn().getOppositeColor());
-        result = result.setFullMoveCounter(totalFullMoves);
-        result = result.setDrawHalfMoveCounter(totalHalfMovesToDraw);
-        result = result.setEnPassantSquare(enPassantSquare);
-
-        return result;
     }
 
     private String getPartialMoveDescription(Move move) {
@@ -426,6 +297,9 @@ public class Board implements MoveHistoryListener, Serializable, BoardGenerator
     }
 
     public Fen getFen() {
+        if (!searchFens.isEmpty()) {
+            return searchFens.get(searchFens.size() - 1);
+        }
         return moveHistory.getCurrentPositionTree().getFen();
     }
 
@@ -440,6 +314,12 @@ public class Board implements MoveHistoryListener, Serializable, BoardGenerator
         }
     }
 
+    private boolean hasBoardListeners() {
+        synchronized (boardListeners) {
+            return !boardListeners.isEmpty();
+        }
+    }
+
     private void fireMateEvent() {
         List<BoardListener> listeners = new ArrayList<BoardListener>();
         synchronized (boardListeners) {
@@ -561,6 +441,7 @@ public class Board implements MoveHistoryListener, Serializable, BoardGenerator
     }
 
     public void reset() {
+        assertNoSearchMoves("reset the board");
         moveHistory.setCurrentPositionTree(moveHistory.getInitialPosition());
     }
 
@@ -568,6 +449,7 @@ public class Board implements MoveHistoryListener, Serializable, BoardGenerator
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
         boardListeners = new ArrayList<BoardListener>();
+        searchFens = new ArrayList<Fen>();
         getMoveHistory().addMoveHistoryListener(this);
         resumeCalculateECO();
     }
@@ -619,6 +501,7 @@ public class Board implements MoveHistoryListener, Serializable, BoardGenerator
     }
 
     public void clearAll() {
+        assertNoSearchMoves("clear the moves");
         if (moveHistory.getInitialPosition().getVariations().size() > 0) {
             Fen start = moveHistory.getInitialPosition().getFen();
             moveHistory.setCurrentPositionTree(new Board(start).getMoveHistory().getCurrentPositionTree());
@@ -648,6 +531,7 @@ public class Board implements MoveHistoryListener, Serializable, BoardGenerator
     }
 
     public void toEndOfMainLine() {
+        assertNoSearchMoves("go to the end of the main line");
         moveHistory.toEndOfMainLine();
     }
 
@@ -657,31 +541,12 @@ public class Board implements MoveHistoryListener, Serializable, BoardGenerator
     }
 
     public void setFen(Fen fen) {
+        assertNoSearchMoves("set the position");
         Board board = new Board(fen);
         moveHistory.setCurrentPositionTree(board.getMoveHistory().getCurrentPositionTree());
     }
 }
 
-class StrippedMoveString implements Iterable<NAG> {
-
-    private final String moveString;
-    private final Collection<NAG> nags;
-
-    public StrippedMoveString(String moveString, Collection<NAG> nags) {
-        this.moveString = moveString;
-        this.nags = nags;
-    }
-
-    public String getMoveString() {
-        return moveString;
-    }
-
-    @Override
-    public Iterator<NAG> iterator() {
-        return nags.iterator();
-    }
-}
-
 class ECOPositionListener implements PositionTreeListener {
 
     private ECO eco = A00;
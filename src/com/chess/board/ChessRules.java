@@ -1,207 +1,265 @@
 package com.chess.board;
 
-import java.awt.*;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
 import static com.chess.board.Color.Black;
 import static com.chess.board.Color.White;
 import static com.chess.board.File.*;
-import static com.chess.board.PieceType.King;
-import static com.chess.board.PieceType.Pawn;
+import static com.chess.board.MoveEncoding.CASTLING;
+import static com.chess.board.MoveEncoding.EN_PASSANT;
+import static com.chess.board.MoveEncoding.NORMAL;
+import static com.chess.board.MoveEncoding.PROMOTION;
+import static com.chess.board.PieceType.*;
 
 public class ChessRules implements Rules {
 
     private static final long serialVersionUID = 1L;
-    private static final List<Point> knightMoves = Arrays.asList(new Point(-2, -1), new Point(-2, 1), new Point(-1, -2), new Point(
-            -1,
-            2), new Point(1, -2), new Point(1, 2), new Point(2, -1), new Point(2, 1));
 
-    private static final List<Point> kingMoves = Arrays.asList(new Point(-1, -1), new Point(-1, 0), new Point(-1, 1), new Point(
-            0,
-            -1), new Point(0, 1), new Point(1, -1), new Point(1, 0), new Point(1, 1));
+    // the per-square queries, mate and draw tests all ask for the moves of the same few positions, often several times
+    // for a single move, so the legal moves of a Board's position are generated once and kept. Each instance has its
+    // own cache, as a subclass may generate different moves for the same position.
+    private transient MoveListCache cache;
 
     @Override
     public void assertLegal(Move move, Board board) throws IllegalMoveException {
+        MoveLegality legality = getLegality(move, board);
+        if (!legality.isLegal()) {
+            throw new IllegalMoveException(move + ": " + legality.getDescription());
+        }
+    }
+
+    @Override
+    public MoveLegality getLegality(Move move, Board board) {
         Position position = board.getPosition();
         Color turn = board.getTurn();
         Piece startPiece = position.get(move.getStartSquare());
         if (startPiece == null) {
-            throw new IllegalMoveException("There is no piece on " + move.getStartSquare() + "!");
+            return MoveLegality.NoPieceOnStartSquare;
         }
 
         if (startPiece.getColor() != turn) {
-            throw new IllegalMoveException("It is " + turn.toString().toLowerCase() + "'s turn to move!");
+            return MoveLegality.NotPlayersTurn;
         }
 
         if (move.getStartSquare() == move.getEndSquare()) {
-            fail(move);
+            return MoveLegality.IllegalPieceMovement;
         }
 
         // eliminate all moves that attempt to capture a piece of our own color
         Piece endPiece = position.get(move.getEndSquare());
         if (endPiece != null && endPiece.getColor() == turn) {
-            fail(move);
+            return MoveLegality.CapturesOwnPiece;
         }
 
+        MoveLegality legality;
         switch (startPiece.getPieceType()) {
             case Queen:
-                assertLegalQueenMove(move, position);
+                legality = getQueenLegality(move, position);
                 break;
             case Rook:
-                assertLegalRookMove(move, position);
+                legality = getRookLegality(move, position);
                 break;
             case Bishop:
-                assertLegalBishopMove(move, position);
+                legality = getBishopLegality(move, position);
                 break;
             case Knight:
-                assertLegalKnightMove(move);
+                legality = getKnightLegality(move);
                 break;
             case Pawn:
-                assertLegalPawnMove(move, position, turn, board.getEnPassantSquare());
+                legality = getPawnLegality(move, position, turn, board.getEnPassantSquare());
                 break;
-            case King:
-                assertLegalKingMove(move, board);
+            default:
+                legality = getKingLegality(move, board);
                 break;
         }
 
+        if (!legality.isLegal()) {
+            return legality;
+        }
+
         // make sure the king will not be in check after we make this move
-        Position result = move(move, position);
-        if (result.isInCheck(turn)) {
-            throw new IllegalMoveException("The king would be in check on " + move.getEndSquare() + "!");
+        if (!isKingSafeAfter(move, startPiece, position, turn)) {
+            return MoveLegality.KingInCheck;
         }
+
+        return MoveLegality.Legal;
     }
 
-    private void assertLegalQueenMove(Move move, Position position) throws IllegalMoveException {
-        try {
-            assertLegalRookMove(move, position);
+    // decides from the pieces checking the king and the pieces pinned to him whether the move leaves the king safe,
+    // without making the move. En passant removes two pieces from one rank at once, which pins cannot describe, so it
+    // is still made and tested, as is any move in a position without a king.
+    private boolean isKingSafeAfter(Move move, Piece piece, Position position, Color turn) {
+        final long kingBitboard = position.getBitboard(Piece.getPiece(turn, King));
+        final boolean enPassant = piece.getPieceType() == Pawn && position.get(move.getEndSquare()) == null
+                                  && move.getStartSquare().getFile() != move.getEndSquare().getFile();
+        if (kingBitboard == 0 || enPassant) {
+            return !move(move, position).isInCheck(turn);
+        }
+
+        final Color enemy = turn.getOppositeColor();
+        final long occupied = position.getOccupied();
+        final int king = Long.numberOfTrailingZeros(kingBitboard);
+        final int from = move.getStartSquare().ordinal();
+        final long to = Bitboards.bit(move.getEndSquare().ordinal());
+        if (from == king) {
+            // the king must not shelter behind himself from a slider he is moving away from
+            return position.getAttackers(move.getEndSquare().ordinal(), enemy, occupied ^ kingBitboard) == 0;
+        }
+
+        long checkers = position.getAttackers(king, enemy, occupied);
+        if (Long.bitCount(checkers) > 1) {
+            // double check, only the king can move
+            return false;
         }
-        catch (IllegalMoveException ime) {
-            assertLegalBishopMove(move, position);
+        if (checkers != 0 && ((checkers | Bitboards.between(king, Long.numberOfTrailingZeros(checkers))) & to) == 0) {
+            // single check, the move must capture the checker or block the line between it and the king
+            return false;
         }
-    }
 
-    private void assertLegalRookMove(Move move, Position position) throws IllegalMoveException {
-        int fileDiff = Math.abs(move.getStartSquare().getFile().ordinal() - move.getEndSquare().getFile().ordinal());
-        int rankDiff = Math.abs(move.getStartSquare().getRank().ordinal() - move.getEndSquare().getRank().ordinal());
+        // a pinned piece can only move along the line between the king and the pinning piece
+        return (getPinnedPieces(king, turn, occupied, position) & Bitboards.bit(from)) == 0
+               || (Bitboards.line(king, from) & to) != 0;
+    }
 
-        if (fileDiff != 0 && rankDiff != 0) {
-            fail(move);
+    private MoveLegality getQueenLegality(Move move, Position position) {
+        if (isStraightLine(move)) {
+            return getSlidingLegality(move, position);
         }
 
-        for (Square square : move.getStartSquare().getSquaresBetween(move.getEndSquare())) {
-            if (position.get(square) != null) {
-                throw new IllegalMoveException("Rooks cannot jump over pieces.");
-            }
+        return getBishopLegality(move, position);
+    }
+
+    private MoveLegality getRookLegality(Move move, Position position) {
+        if (!isStraightLine(move)) {
+            return MoveLegality.IllegalPieceMovement;
         }
+
+        return getSlidingLegality(move, position);
     }
 
-    private void assertLegalBishopMove(Move move, Position position) throws IllegalMoveException {
+    private MoveLegality getBishopLegality(Move move, Position position) {
         int fileDiff = Math.abs(move.getStartSquare().getFile().ordinal() - move.getEndSquare().getFile().ordinal());
         int rankDiff = Math.abs(move.getStartSquare().getRank().ordinal() - move.getEndSquare().getRank().ordinal());
 
         if (fileDiff != rankDiff) {
-            fail(move);
+            return MoveLegality.IllegalPieceMovement;
         }
 
-        for (Square square : move.getStartSquare().getSquaresBetween(move.getEndSquare())) {
-            if (position.get(square) != null) {
-                throw new IllegalMoveException("Bishops cannot jump over pieces.");
-            }
+        return getSlidingLegality(move, position);
+    }
+
+    private boolean isStraightLine(Move move) {
+        return move.getStartSquare().getFile() == move.getEndSquare().getFile()
+               || move.getStartSquare().getRank() == move.getEndSquare().getRank();
+    }
+
+    private MoveLegality getSlidingLegality(Move move, Position position) {
+        long between = Bitboards.between(move.getStartSquare().ordinal(), move.getEndSquare().ordinal());
+        if ((between & position.getOccupied()) != 0) {
+            return MoveLegality.JumpsOverPiece;
         }
+
+        return MoveLegality.Legal;
     }
 
-    private void assertLegalKnightMove(Move move) throws IllegalMoveException {
+    private MoveLegality getKnightLegality(Move move) {
         int fileDiff = Math.abs(move.getStartSquare().getFile().ordinal() - move.getEndSquare().getFile().ordinal());
         int rankDiff = Math.abs(move.getStartSquare().getRank().ordinal() - move.getEndSquare().getRank().ordinal());
 
         if (fileDiff == 2 && rankDiff == 1 || fileDiff == 1 && rankDiff == 2) {
-            // legal move, do nothing.
-        }
-        else {
-            fail(move);
+            return MoveLegality.Legal;
         }
+
+        return MoveLegality.IllegalPieceMovement;
     }
 
     @Override
     public Position move(Move move, Position position) {
-        Position copy = position.put(move.getEndSquare(), position.get(move.getStartSquare()));
-        copy = copy.put(move.getStartSquare(), null);
+        final Piece piece = position.get(move.getStartSquare());
+        Position copy = position.clone();
+        copy.set(move.getStartSquare(), null);
 
-        if (move.getEndSquare().isBackRank() && position.get(move.getStartSquare()).getPieceType() == PieceType.Pawn) {
-            copy = copy.put(
-                    move.getEndSquare(),
-                    Piece.getPiece(position.get(move.getStartSquare()).getColor(), move.getPromotionPiece().getPieceType()));
+        if (move.getEndSquare().isBackRank() && piece.getPieceType() == PieceType.Pawn) {
+            copy.set(move.getEndSquare(), Piece.getPiece(piece.getColor(), move.getPromotionPiece().getPieceType()));
+        }
+        else {
+            copy.set(move.getEndSquare(), piece);
         }
 
         // if we are castling, move the rook
-        if (position.get(move.getStartSquare()).getPieceType() == King) {
+        if (piece.getPieceType() == King) {
             if (move.getStartSquare().getFile() == e) {
                 if (move.getEndSquare().getFile() == g) {
                     final Square rookSquare = Square.getSquare(h, move.getStartSquare().getRank());
-                    copy = copy.put(Square.getSquare(f, move.getStartSquare().getRank()), copy.get(rookSquare));
-                    copy = copy.put(rookSquare, null);
+                    copy.set(Square.getSquare(f, move.getStartSquare().getRank()), copy.get(rookSquare));
+                    copy.set(rookSquare, null);
                 }
                 else if (move.getEndSquare().getFile() == c) {
                     final Square rookSquare = Square.getSquare(a, move.getStartSquare().getRank());
-                    copy = copy.put(Square.getSquare(d, move.getStartSquare().getRank()), copy.get(rookSquare));
-                    copy = copy.put(rookSquare, null);
+                    copy.set(Square.getSquare(d, move.getStartSquare().getRank()), copy.get(rookSquare));
+                    copy.set(rookSquare, null);
                 }
             }
         }
 
         // if we are capturing en passant, remove the enemy pawn
-        if (position.get(move.getStartSquare()).getPieceType() == Pawn && position.get(move.getEndSquare()) == null
+        if (piece.getPieceType() == Pawn && position.get(move.getEndSquare()) == null
             && move.getStartSquare().getFile() != move.getEndSquare().getFile()) {
-            copy = copy.put(Square.getSquare(move.getEndSquare().getFile(), move.getStartSquare().getRank()), null);
+            copy.set(Square.getSquare(move.getEndSquare().getFile(), move.getStartSquare().getRank()), null);
         }
 
         return copy;
     }
 
-    private void assertLegalKingMove(Move move, Board board) throws IllegalMoveException {
+    private MoveLegality getKingLegality(Move move, Board board) {
         // (usually) cannot move more then 1 file left or right
         final int fileDiff = Math.abs(move.getEndSquare().getFile().ordinal() - move.getStartSquare().getFile().ordinal());
         if (fileDiff > 1) {
             // check for castling
             if (fileDiff == 2 && move.getStartSquare().getFile() == e
-                && move.getStartSquare().getRank() == board.getTurn().getBackRank()) {
+                && move.getStartSquare().getRank() == board.getTurn().getBackRank()
+                && move.getEndSquare().getRank() == move.getStartSquare().getRank()) {
                 // make sure we aren't in check
-                if (board.getPosition().isInCheck(board.getTurn())) {
-                    throw new IllegalMoveException("Castling out of check is illegal.");
+                Position position = board.getPosition();
+                Color enemy = board.getTurn().getOppositeColor();
+                if (position.getAttackers(move.getStartSquare().ordinal(), enemy, position.getOccupied()) != 0) {
+                    return MoveLegality.CastlingOutOfCheck;
                 }
 
                 // could be castling... see if the king or rook have moved yet
                 // or if we are in check, or moving through check (ending up in check is covered later)
                 if (!board.canCastleTo(move.getEndSquare().getFile().getSide())) {
-                    throw new IllegalMoveException("Castling is illegal in this position.");
+                    return MoveLegality.CastlingNotAllowed;
                 }
 
-                // make sure we aren't moving through check
+                // make sure we aren't moving through check. The king is not in check, so he does not block any
+                // attack on the square he passes over.
                 Square inBetween = Square.getSquare(move.getEndSquare().getFile() == g ? f : d, move.getStartSquare().getRank());
-                if (board.getPosition().get(inBetween) != null) {
-                    throw new IllegalMoveException("Castling is illegal with a piece between the king and rook.");
+                Square knightSquare = move.getEndSquare().getFile() == g ? null : Square.getSquare(b, move.getStartSquare().getRank());
+                if (position.get(inBetween) != null || position.get(move.getEndSquare()) != null
+                    || position.get(knightSquare) != null) {
+                    return MoveLegality.CastlingBlocked;
                 }
-                Position copy = board.getPosition().put(inBetween, board.getPosition().get(move.getStartSquare()));
-                copy = copy.put(move.getStartSquare(), null);
-                if (copy.isInCheck(board.getTurn())) {
-                    throw new IllegalMoveException("Castling through check is illegal.");
+                if (position.getAttackers(inBetween.ordinal(), enemy, position.getOccupied()) != 0) {
+                    return MoveLegality.CastlingThroughCheck;
                 }
             }
             else {
-                fail(move);
+                return MoveLegality.IllegalPieceMovement;
             }
         }
 
         // cannot move more then 1 rank up or down
         if (Math.abs(move.getEndSquare().getRank().ordinal() - move.getStartSquare().getRank().ordinal()) > 1) {
-            fail(move);
+            return MoveLegality.IllegalPieceMovement;
         }
+
+        return MoveLegality.Legal;
     }
 
-    private void assertLegalPawnMove(Move move, Position position, Color turn, Square enPassantSquare) throws IllegalMoveException {
+    private MoveLegality getPawnLegality(Move move, Position position, Color turn, Square enPassantSquare) {
         File startFile = move.getStartSquare().getFile();
         File endFile = move.getEndSquare().getFile();
 
@@ -210,73 +268,61 @@ public class ChessRules implements Rules {
 
         // we can never move more then one file away from the start square
         if (Math.abs(startFile.ordinal() - endFile.ordinal()) > 1) {
-            fail(move);
+            return MoveLegality.IllegalPieceMovement;
         }
 
         // pawns only move forward
         if ((startRank.ordinal() - endRank.ordinal()) * turn.multiplier() >= 0) {
-            fail(move);
+            return MoveLegality.IllegalPieceMovement;
         }
 
         // pawns can never move more then two ranks
         if ((endRank.ordinal() - startRank.ordinal()) * turn.multiplier() > 2) {
-            fail(move);
+            return MoveLegality.IllegalPieceMovement;
         }
 
         // if we move two ranks, there cannot be a piece directly in front of us
         if ((endRank.ordinal() - startRank.ordinal()) * turn.multiplier() == 2) {
             Piece oneSquareInFront = position.get(Square.getSquare(startFile, startRank.getRelativeRank(turn.multiplier())));
             if (oneSquareInFront != null)
-                fail(move);
+                return MoveLegality.JumpsOverPiece;
         }
 
         // pawns can only move two ranks from their starting position
         // and then they can only move in a straight line
         if ((endRank.ordinal() - startRank.ordinal()) * turn.multiplier() == 2) {
             if (startFile != endFile) {
-                fail(move);
+                return MoveLegality.IllegalPieceMovement;
             }
 
             if (turn == Black && startRank.ordinal() != 6) {
-                fail(move);
+                return MoveLegality.IllegalPieceMovement;
             }
             else if (turn == White && startRank.ordinal() != 1) {
-                fail(move);
+                return MoveLegality.IllegalPieceMovement;
             }
         }
 
         // pawns can only move diagonally when they are capturing a piece
         Piece endPiece = position.get(move.getEndSquare());
         if (endPiece != null && startFile == endFile) {
-            throw new IllegalMoveException("Pawns can only capture diagonally.");
+            return MoveLegality.PawnCapturesStraight;
         }
 
         // if we are moving diagonally, we must capture a piece
         if (startFile != endFile && endPiece == null && move.getEndSquare() != enPassantSquare) {
-            fail(move);
+            return MoveLegality.IllegalPieceMovement;
         }
 
         if (move.getEndSquare().isBackRank() && move.getPromotionPiece() == null)
-            fail(move, "No promotion piece was specified for this move!");
-    }
-
-    private void fail(Move move) throws IllegalMoveException {
-        fail(move, move + " is not a legal move.");
-    }
+            return MoveLegality.NoPromotionPiece;
 
-    private void fail(Move move, String reason) throws IllegalMoveException {
-        throw new IllegalMoveException(move + ": " + reason);
+        return MoveLegality.Legal;
     }
 
     @Override
     public boolean isLegal(Move move, Board board) {
-        try {
-            assertLegal(move, board);
-            return true;
-        }
-        catch (IllegalMoveException ime) {
-            return false;
-        }
+        return getLegality(move, board).isLegal();
     }
 
     @Override
@@ -284,123 +330,41 @@ public class ChessRules implements Rules {
         return getAnyLegalMoveStartingOn(square, board) != null;
     }
 
-    private Move buildLegalKnightMove(Square square, Board board) {
-        return buildLegalPieceMove(square, knightMoves, board);
-    }
-
-    private Move buildLegalPieceMove(Square square, List<Point> moves, Board board) {
-        for (Point point : moves) {
-            Move move = buildLegalMove(square, point.x, point.y, board);
-            if (move != null)
-                return move;
-        }
-
-        return null;
-    }
-
-    private Move buildLegalKingMove(Square square, Board board) {
-        return buildLegalPieceMove(square, kingMoves, board);
-    }
-
-    private Move buildLegalRookMove(Square square, Board board) {
-        for (int i = 0; i < 8; i++) {
-            Square top = square.getRelativeSquare(0, i);
-            if (top != null && isLegal(new Move(square, top), board)) {
-                return new Move(square, top);
-            }
-
-            Square left = square.getRelativeSquare(-i, 0);
-            if (left != null && isLegal(new Move(square, left), board)) {
-                return new Move(square, left);
-            }
-
-            Square right = square.getRelativeSquare(i, 0);
-            if (right != null && isLegal(new Move(square, right), board)) {
-                return new Move(square, right);
-            }
-
-            Square bottom = square.getRelativeSquare(0, -i);
-            if (bottom != null && isLegal(new Move(square, bottom), board)) {
-                return new Move(square, bottom);
-            }
-        }
-
-        return null;
-    }
-
-    private Move buildLegalBishopMove(Square square, Board board) {
-        for (int i = 0; i < 8; i++) {
-            Square topRight = square.getRelativeSquare(i, i);
-            if (topRight != null && isLegal(new Move(square, topRight), board)) {
-                return new Move(square, topRight);
-            }
-
-            Square topLeft = square.getRelativeSquare(-i, i);
-            if (topLeft != null && isLegal(new Move(square, topLeft), board)) {
-                return new Move(square, topLeft);
-            }
-
-            Square bottomRight = square.getRelativeSquare(i, -i);
-            if (bottomRight != null && isLegal(new Move(square, bottomRight), board)) {
-                return new Move(square, bottomRight);
-            }
-
-            Square bottomLeft = square.getRelativeSquare(-i, -i);
-            if (bottomLeft != null && isLegal(new Move(square, bottomLeft), board)) {
-                return new Move(square, bottomLeft);
-            }
-        }
-
-        return null;
-    }
-
-    private Move buildLegalMove(Square square, int fileOffset, int rankOffset, Board board) {
-        Square endSquare = square.getRelativeSquare(fileOffset, rankOffset);
-        if (endSquare == null) {
-            return null;
-        }
-
-        Move move = Move.buildMove(square, endSquare, board);
-        if (isLegal(move, board))
-            return move;
-        else
-            return null;
-    }
-
     @Override
     public boolean canAnyLegalMoveEndOn(Square square, Board board) {
-        return getLegalMovesEndingOn(square, board).size() > 0;
+        return getAnyLegalMoveEndingOn(square, board) != null;
     }
 
     @Override
     public Collection<Move> getLegalMovesEndingOn(Square square, Board board) {
-        Collection<Move> result = new ArrayList<Move>();
-        for (PieceLocation pieceLocation : board.getPosition().getPieceLocations()) {
-            final Move move = Move.buildMove(pieceLocation.getSquare(), square, board);
-            if (board.isLegal(move)) {
-                result.add(move);
-            }
-        }
-
-        return result;
+        return getDefaultPromotionMoves(board, square, false);
     }
 
     @Override
     public Collection<Move> getLegalMovesStartingOn(Square startSquare, Board board) {
-        List<Move> result = new ArrayList<Move>();
+        return getDefaultPromotionMoves(board, startSquare, true);
+    }
 
-        // not a very efficient implementation, but it works...
-        // if speed is a problem, we could check the piece type on the start square and
-        // then only search squares that are plausible destinations for that piece.
-        for (Square square : Square.values()) {
-            Move move = Move.buildMove(startSquare, square, board);
-            if (isLegal(move, board)) {
-                result.add(move);
+    // the per-square queries describe where a piece can go, so each promotion is listed once, as the queen promotion
+    // Move.buildMove() would create, rather than once per promotion piece.
+    private List<Move> getDefaultPromotionMoves(Board board, Square square, boolean startingOn) {
+        List<Move> result = new ArrayList<Move>();
+        MoveList moves = getCachedMoveList(board.getFen());
+        for (int i = 0; i < moves.size(); i++) {
+            short move = moves.get(i);
+            int moveSquare = startingOn ? MoveEncoding.getFrom(move) : MoveEncoding.getTo(move);
+            if (moveSquare == square.ordinal() && isDefaultPromotion(move)) {
+                result.add(MoveEncoding.decode(move));
             }
         }
+
         return result;
     }
 
+    private boolean isDefaultPromotion(short move) {
+        return !MoveEncoding.isPromotion(move) || MoveEncoding.getPromotion(move) == Promotion.Queen;
+    }
+
     @Override
     public DrawType getDrawType(Board board) {
         // see if we have gone 50 full moves without a pawn move or capture
@@ -427,74 +391,282 @@ public class ChessRules implements Rules {
 
     @Override
     public Move getAnyLegalMoveEndingOn(Square square, Board board) {
-        return null;
+        List<Move> moves = getDefaultPromotionMoves(board, square, false);
+        return moves.isEmpty() ? null : moves.get(0);
     }
 
     @Override
     public Move getAnyLegalMoveStartingOn(Square square, Board board) {
-        Piece piece = board.getPieceAt(square);
-        Color turn = board.getTurn();
-        if (piece == null || piece.getColor() != turn) {
-            return null;
+        List<Move> moves = getDefaultPromotionMoves(board, square, true);
+        return moves.isEmpty() ? null : moves.get(0);
+    }
+
+    @Override
+    public Move getAnyLegalMove(Board board) {
+        MoveList moves = getCachedMoveList(board.getFen());
+        return moves.isEmpty() ? null : MoveEncoding.decode(moves.get(0));
+    }
+
+    @Override
+    public boolean isCheckMate(Board board) {
+        return !currentPlayerHasLegalMove(board) && board.getPosition().isInCheck(board.getTurn());
+    }
+
+    @Override
+    public List<Move> getLegalMoves(Board board) {
+        // searches like Perft visit most positions only once, so they would gain nothing from the cache
+        return getLegalMoves(board.getFen());
+    }
+
+    @Override
+    public MoveList getLegalMoveList(Board board) {
+        return new MoveList(getCachedMoveList(board.getFen()));
+    }
+
+    // the list is shared with other callers, so it must not be changed
+    private MoveList getCachedMoveList(Fen fen) {
+        MoveListCache cache = getCache();
+        MoveList moves = cache.get(fen);
+        if (moves == null) {
+            moves = getLegalMoveList(fen);
+            cache.put(fen, moves);
         }
 
-        switch (piece.getPieceType()) {
-            case Pawn:
-                return buildLegalPawnMove(square, board, turn);
-            case Bishop:
-                return buildLegalBishopMove(square, board);
-            case Knight:
-                return buildLegalKnightMove(square, board);
-            case Rook:
-                return buildLegalRookMove(square, board);
-            case Queen:
-                Move bishopMove = buildLegalBishopMove(square, board);
-                if (bishopMove != null)
-                    return bishopMove;
-                return buildLegalRookMove(square, board);
-            default:
-                return buildLegalKingMove(square, board);
+        return moves;
+    }
+
+    // made when first needed, as the cache is not serialized with the rules
+    private synchronized MoveListCache getCache() {
+        if (cache == null) {
+            cache = new MoveListCache(256);
         }
+        return cache;
+    }
+
+    /**
+     * generates every legal move for the side to move in one pass. Pawn moves to the back rank are listed once for
+     * each promotion piece.
+     */
+    public List<Move> getLegalMoves(Fen fen) {
+        return getLegalMoveList(fen).toMoves();
     }
 
-    private Move buildLegalPawnMove(Square square, Board board, Color turn) {
-        Move stepForward = buildLegalMove(square, 0, turn.multiplier(), board);
-        if (stepForward != null)
-            return stepForward;
+    /**
+     * the same moves as getLegalMoves(), in the same order, encoded with MoveEncoding (including the kind of move).
+     */
+    public MoveList getLegalMoveList(Fen fen) {
+        MoveList moves = new MoveList();
+        final Position position = fen.getPosition();
+        final Color turn = fen.getTurn();
+        final Color enemy = turn.getOppositeColor();
+        final long own = position.getOccupied(turn);
+        final long occupied = own | position.getOccupied(enemy);
+
+        // squares a non-king move may end on: anything but our own pieces, narrowed down when we are in check
+        long targets = ~own;
+        long pinned = 0;
+        final long kingBitboard = position.getBitboard(Piece.getPiece(turn, King));
+        final int king = Long.numberOfTrailingZeros(kingBitboard);
+        if (kingBitboard != 0) {
+            long checkers = position.getAttackers(king, enemy, occupied);
+            pinned = getPinnedPieces(king, turn, occupied, position);
+
+            // the king steps to any square that is not attacked once he has left his own square
+            long kingMoves = Bitboards.kingAttacks(king) & ~own;
+            while (kingMoves != 0) {
+                int to = Long.numberOfTrailingZeros(kingMoves);
+                if (position.getAttackers(to, enemy, occupied ^ kingBitboard) == 0) {
+                    moves.add(MoveEncoding.encode(king, to, NORMAL, null));
+                }
+                kingMoves &= kingMoves - 1;
+            }
 
-        Move captureRight = buildLegalMove(square, 1, turn.multiplier(), board);
-        if (captureRight != null)
-            return captureRight;
+            if (Long.bitCount(checkers) > 1) {
+                // double check, only the king can move
+                return moves;
+            }
+            else if (checkers != 0) {
+                // single check, capture the checker or block the line between it and the king
+                int checker = Long.numberOfTrailingZeros(checkers);
+                targets &= checkers | Bitboards.between(king, checker);
+            }
+            else {
+                addCastlingMoves(fen, king, occupied, moves);
+            }
+        }
 
-        Move captureLeft = buildLegalMove(square, -1, turn.multiplier(), board);
-        if (captureLeft != null)
-            return captureLeft;
+        for (PieceType type : new PieceType[] { Knight, Bishop, Rook, Queen }) {
+            long pieces = position.getBitboard(Piece.getPiece(turn, type));
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                long attacks = getAttacks(type, from, occupied) & targets;
+                if ((pinned & Bitboards.bit(from)) != 0) {
+                    // a pinned piece can only slide along the line between the king and the pinning piece
+                    attacks &= Bitboards.line(king, from);
+                }
 
-        // if stepping 1 forward is illegal, stepping two forward will almost never be legal...
-        // ... except when stepping two forward blocks a check on the king!
-        Move stepTwoForward = buildLegalMove(square, 0, 2 * turn.multiplier(), board);
-        if (stepTwoForward != null)
-            return stepTwoForward;
+                while (attacks != 0) {
+                    moves.add(MoveEncoding.encode(from, Long.numberOfTrailingZeros(attacks), NORMAL, null));
+                    attacks &= attacks - 1;
+                }
+                pieces &= pieces - 1;
+            }
+        }
 
-        return null;
+        addPawnMoves(fen, king, targets, pinned, occupied, moves);
+        return moves;
     }
 
-    @Override
-    public Move getAnyLegalMove(Board board) {
-        for (PieceLocation pieceLocation : board.getPosition().getPieceLocations()) {
-            if (pieceLocation.getPiece().getColor() == board.getTurn()) {
-                Move move = getAnyLegalMoveStartingOn(pieceLocation.getSquare(), board);
-                if (move != null)
-                    return move;
+    private void addPawnMoves(Fen fen, int king, long targets, long pinned, long occupied, MoveList moves) {
+        final Position position = fen.getPosition();
+        final Color turn = fen.getTurn();
+        final Color enemy = turn.getOppositeColor();
+        final int forward = turn.multiplier(); // one rank up the board is one square index up
+        final int startRank = Rank.second.fromPerspective(turn).ordinal();
+        final int lastRank = Rank.eighth.fromPerspective(turn).ordinal();
+        final Square enPassantSquare = fen.getEnPassantSquare();
+
+        long pawns = position.getBitboard(Piece.getPiece(turn, Pawn));
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            if (from % 8 == lastRank) {
+                continue;
+            }
+
+            long allowed = targets;
+            if ((pinned & Bitboards.bit(from)) != 0) {
+                allowed &= Bitboards.line(king, from);
+            }
+
+            int oneStep = from + forward;
+            if ((occupied & Bitboards.bit(oneStep)) == 0) {
+                if ((allowed & Bitboards.bit(oneStep)) != 0) {
+                    addPawnMove(from, oneStep, lastRank, moves);
+                }
+
+                int twoSteps = oneStep + forward;
+                if (from % 8 == startRank && (occupied & Bitboards.bit(twoSteps)) == 0
+                    && (allowed & Bitboards.bit(twoSteps)) != 0) {
+                    moves.add(MoveEncoding.encode(from, twoSteps, NORMAL, null));
+                }
+            }
+
+            long captures = Bitboards.pawnAttacks(turn, from) & position.getOccupied(enemy) & allowed;
+            while (captures != 0) {
+                addPawnMove(from, Long.numberOfTrailingZeros(captures), lastRank, moves);
+                captures &= captures - 1;
+            }
+
+            if (enPassantSquare != null && (Bitboards.pawnAttacks(turn, from) & Bitboards.bit(enPassantSquare.ordinal())) != 0) {
+                addEnPassantMove(position, turn, from, enPassantSquare.ordinal(), king, occupied, moves);
             }
         }
+    }
 
-        return null;
+    private void addPawnMove(int from, int to, int lastRank, MoveList moves) {
+        if (to % 8 == lastRank) {
+            for (Promotion promotion : Promotion.values()) {
+                moves.add(MoveEncoding.encode(from, to, PROMOTION, promotion));
+            }
+        }
+        else {
+            moves.add(MoveEncoding.encode(from, to, NORMAL, null));
+        }
     }
 
-    @Override
-    public boolean isCheckMate(Board board) {
-        return !currentPlayerHasLegalMove(board) && board.getPosition().isInCheck(board.getTurn());
+    // en passant removes two pieces from one rank at once, which pins cannot describe, so we make the capture on the
+    // occupancy mask and look for attacks on the king directly.
+    private void addEnPassantMove(Position position, Color turn, int from, int to, int king, long occupied, MoveList moves) {
+        final Color enemy = turn.getOppositeColor();
+        final int captured = 8 * (to / 8) + from % 8;
+        final long capturedBit = Bitboards.bit(captured);
+        if ((occupied & Bitboards.bit(to)) != 0 || (position.getBitboard(Piece.getPiece(enemy, Pawn)) & capturedBit) == 0) {
+            return;
+        }
+
+        if (king < 64) {
+            long after = (occupied ^ Bitboards.bit(from) ^ capturedBit) | Bitboards.bit(to);
+            if ((position.getAttackers(king, enemy, after) & ~capturedBit) != 0) {
+                return;
+            }
+        }
+
+        moves.add(MoveEncoding.encode(from, to, EN_PASSANT, null));
+    }
+
+    private void addCastlingMoves(Fen fen, int king, long occupied, MoveList moves) {
+        final Color turn = fen.getTurn();
+        final Rank backRank = turn.getBackRank();
+        if (king != Square.getSquare(e, backRank).ordinal()) {
+            return;
+        }
+
+        boolean kingside = turn == White ? fen.canWhiteCastleKingside() : fen.canBlackCastleKingside();
+        if (kingside && canCastleThrough(fen.getPosition(), turn, h, new File[] { f, g }, new File[] { f, g }, occupied)) {
+            moves.add(MoveEncoding.encode(king, Square.getSquare(g, backRank).ordinal(), CASTLING, null));
+        }
+
+        boolean queenside = turn == White ? fen.canWhiteCastleQueenside() : fen.canBlackCastleQueenside();
+        if (queenside && canCastleThrough(fen.getPosition(), turn, a, new File[] { b, c, d }, new File[] { c, d }, occupied)) {
+            moves.add(MoveEncoding.encode(king, Square.getSquare(c, backRank).ordinal(), CASTLING, null));
+        }
+    }
+
+    private boolean canCastleThrough(Position position, Color turn, File rookFile, File[] empty, File[] safe, long occupied) {
+        final Rank backRank = turn.getBackRank();
+        if (position.get(Square.getSquare(rookFile, backRank)) != Piece.getPiece(turn, PieceType.Rook)) {
+            return false;
+        }
+
+        for (File file : empty) {
+            if ((occupied & Bitboards.bit(Square.getSquare(file, backRank).ordinal())) != 0) {
+                return false;
+            }
+        }
+
+        // the generator sees each position once, so looking at just these squares beats building the attack maps
+        for (File file : safe) {
+            if (position.getAttackers(Square.getSquare(file, backRank).ordinal(), turn.getOppositeColor(), occupied) != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private long getAttacks(PieceType type, int square, long occupied) {
+        switch (type) {
+            case Knight:
+                return Bitboards.knightAttacks(square);
+            case Bishop:
+                return Bitboards.bishopAttacks(square, occupied);
+            case Rook:
+                return Bitboards.rookAttacks(square, occupied);
+            case Queen:
+                return Bitboards.queenAttacks(square, occupied);
+            default:
+                return Bitboards.kingAttacks(square);
+        }
+    }
+
+    // a piece is pinned when it is the only piece between its king and an enemy slider that would otherwise attack him
+    private long getPinnedPieces(int king, Color turn, long occupied, Position position) {
+        final Color enemy = turn.getOppositeColor();
+        long queens = position.getBitboard(Piece.getPiece(enemy, Queen));
+        long snipers = (Bitboards.rookAttacks(king, 0) & (position.getBitboard(Piece.getPiece(enemy, Rook)) | queens))
+                       | (Bitboards.bishopAttacks(king, 0) & (position.getBitboard(Piece.getPiece(enemy, Bishop)) | queens));
+
+        long pinned = 0;
+        while (snipers != 0) {
+            long blockers = Bitboards.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & position.getOccupied(turn);
+            }
+            snipers &= snipers - 1;
+        }
+
+        return pinned;
     }
 
     @Override
@@ -28,6 +28,9 @@ public class Fen implements Cloneable, Serializable {
     private int drawHalfMoveCounter;
     private int gameFullMoveCounter;
 
+    private Fen() {
+    }
+
     public Fen(String fenString) throws FENFormatException {
         try {
             setDataFromFenString(fenString);
@@ -51,10 +54,11 @@ public class Fen implements Cloneable, Serializable {
         int castleStart = positionDetails.length() + 3;
         int castleEnd = fenString.indexOf(" ", castleStart);
         String castleString = fenString.substring(castleStart, castleEnd);
-        whiteCastleKingside = castleString.contains("K") && position.get(e1) == WhiteKing && position.get(h1) == WhiteRook;
-        whiteCastleQueenside = castleString.contains("Q") && position.get(e1) == WhiteKing && position.get(a1) == WhiteRook;
-        blackCastleKingside = castleString.contains("k") && position.get(e8) == BlackKing && position.get(h8) == BlackRook;
-        blackCastleQueenside = castleString.contains("q") && position.get(e8) == BlackKing && position.get(a8) == BlackRook;
+        whiteCastleKingside = castleString.contains("K");
+        whiteCastleQueenside = castleString.contains("Q");
+        blackCastleKingside = castleString.contains("k");
+        blackCastleQueenside = castleString.contains("q");
+        removeImpossibleCastling();
 
         enPassantSquare = fenString.charAt(castleEnd + 1) == '-' ? null : Square.valueOf(fenString.substring(
                 castleEnd + 1,
@@ -67,6 +71,14 @@ public class Fen implements Cloneable, Serializable {
                 lastSpace));
     }
 
+    // a side can only keep the right to castle while its king and the rook are still on their starting squares
+    private void removeImpossibleCastling() {
+        whiteCastleKingside &= position.get(e1) == WhiteKing && position.get(h1) == WhiteRook;
+        whiteCastleQueenside &= position.get(e1) == WhiteKing && position.get(a1) == WhiteRook;
+        blackCastleKingside &= position.get(e8) == BlackKing && position.get(h8) == BlackRook;
+        blackCastleQueenside &= position.get(e8) == BlackKing && position.get(a8) == BlackRook;
+    }
+
     @Override
     public Fen clone() {
         try {
@@ -182,6 +194,16 @@ public class Fen implements Cloneable, Serializable {
         return position;
     }
 
+    /**
+     * a 64-bit hash of everything equalsIgnoreMoveCount() compares: the position, side to move, castling rights and en
+     * passant file. Two Fens with the same key are, for all practical purposes, the same position.
+     */
+    public long getZobristKey() {
+        return position.getZobristKey() ^ Zobrist.turn(turn)
+               ^ Zobrist.castling(whiteCastleKingside, whiteCastleQueenside, blackCastleKingside, blackCastleQueenside)
+               ^ Zobrist.enPassant(enPassantSquare);
+    }
+
     private Position buildPositionFromString(String positionDetails) {
         Position position = new Position();
         Square currentSquare = a8;
@@ -192,7 +214,7 @@ public class Fen implements Cloneable, Serializable {
 
             Piece nextPiece = Piece.pieceFromFenEncoding(nextChar);
             if (nextPiece != null) {
-                position = position.put(currentSquare, nextPiece);
+                position.set(currentSquare, nextPiece);
             }
             else if (currentSquare.getFile() != h) {
                 int emptyFiles = Integer.parseInt(String.valueOf(nextChar)) - 1;
@@ -219,25 +241,29 @@ public class Fen implements Cloneable, Serializable {
     public Fen setCanWhiteCastleKingside(boolean castle) {
         Fen clone = clone();
         clone.whiteCastleKingside = castle;
-        return new Fen(clone.toString());
+        clone.removeImpossibleCastling();
+        return clone;
     }
 
     public Fen setCanWhiteCastleQueenside(boolean castle) {
         Fen clone = clone();
         clone.whiteCastleQueenside = castle;
-        return new Fen(clone.toString());
+        clone.removeImpossibleCastling();
+        return clone;
     }
 
     public Fen setCanBlackCastleQueenside(boolean castle) {
         Fen clone = clone();
         clone.blackCastleQueenside = castle;
-        return new Fen(clone.toString());
+        clone.removeImpossibleCastling();
+        return clone;
     }
 
     public Fen setCanBlackCastleKingside(boolean castle) {
         Fen clone = clone();
         clone.blackCastleKingside = castle;
-        return new Fen(clone.toString());
+        clone.removeImpossibleCastling();
+        return clone;
     }
 
     public Fen setTurn(Color color) {
@@ -246,36 +272,64 @@ public class Fen implements Cloneable, Serializable {
         return clone;
     }
 
-    public static Fen buildPartialFenFromPosition(Position position) {
-        StringBuilder result = new StringBuilder();
-        int emptySquares = 0;
-        for (Rank rank : Rank.reverseValues()) {
-            for (File file : File.values()) {
-                Piece piece = position.get(Square.getSquare(file, rank));
-                if (piece == null) {
-                    emptySquares++;
-                    continue;
-                }
-                else if (emptySquares > 0) {
-                    result.append(emptySquares);
-                    emptySquares = 0;
-                }
-
-                result.append(piece.getFenEncoding());
+    /**
+     * returns the Fen after the move has been played from this one. The position is the result of playing the move on
+     * this Fen's position (see Rules.move()), the move counters, castling rights and en passant square are worked out
+     * here.
+     */
+    public Fen afterMove(Move move, Position position) {
+        int totalFullMoves = getFullMoveCount();
+        if (getTurn() == Black)
+            totalFullMoves++;
+        int totalHalfMovesToDraw = getHalfMovesSinceLastPawnMoveOrCapture();
+        Square enPassantSquare = null;
+        final Piece piece = getPosition().get(move.getStartSquare());
+        if (piece.getPieceType() == PieceType.Pawn) {
+            int rankDiff = Math.abs(move.getStartSquare().getRank().ordinal() - move.getEndSquare().getRank().ordinal());
+            if (rankDiff == 2) {
+                enPassantSquare = move.getEndSquare().getRelativeSquare(0, -getTurn().multiplier());
             }
 
-            if (emptySquares > 0) {
-                result.append(emptySquares);
-                emptySquares = 0;
-            }
+            totalHalfMovesToDraw = 0;
+        }
+        else {
+            totalHalfMovesToDraw++;
+        }
 
-            if (rank != Rank.first) {
-                result.append("/");
-            }
+        if (getPosition().get(move.getEndSquare()) != null) {
+            totalHalfMovesToDraw = 0;
         }
 
-        result.append(" w KQkq - 0 1");
-        return new Fen(result.toString());
+        Fen result = clone();
+        result.position = position;
+        result.turn = getTurn().getOppositeColor();
+        result.whiteCastleKingside &= move.getStartSquare() != h1 && move.getStartSquare() != e1;
+        result.whiteCastleQueenside &= move.getStartSquare() != a1 && move.getStartSquare() != e1;
+        result.blackCastleKingside &= move.getStartSquare() != h8 && move.getStartSquare() != e8;
+        result.blackCastleQueenside &= move.getStartSquare() != a8 && move.getStartSquare() != e8;
+        result.removeImpossibleCastling();
+        result.gameFullMoveCounter = totalFullMoves;
+        result.drawHalfMoveCounter = totalHalfMovesToDraw;
+        result.enPassantSquare = enPassantSquare;
+
+        return result;
+    }
+
+    /**
+     * returns a Fen for the position with white to move, castling allowed wherever the kings and rooks are still on
+     * their starting squares, no en passant square and the move counters at the start of a game.
+     */
+    public static Fen buildPartialFenFromPosition(Position position) {
+        Fen result = new Fen();
+        result.position = position;
+        result.turn = White;
+        result.whiteCastleKingside = true;
+        result.whiteCastleQueenside = true;
+        result.blackCastleKingside = true;
+        result.blackCastleQueenside = true;
+        result.removeImpossibleCastling();
+        result.gameFullMoveCounter = 1;
+        return result;
     }
 
     public Fen setFullMoveCounter(int totalFullMoves) {
@@ -305,16 +359,10 @@ public class Fen implements Cloneable, Serializable {
     @Override
     public int hashCode() {
         final int prime = 31;
-        int result = 1;
-        result = prime * result + (blackCastleKingside ? 1231 : 1237);
-        result = prime * result + (blackCastleQueenside ? 1231 : 1237);
+        long key = getZobristKey();
+        int result = (int) (key ^ (key >>> 32));
         result = prime * result + drawHalfMoveCounter;
-        result = prime * result + ((enPassantSquare == null) ? 0 : enPassantSquare.hashCode());
         result = prime * result + gameFullMoveCounter;
-        result = prime * result + ((position == null) ? 0 : position.hashCode());
-        result = prime * result + ((turn == null) ? 0 : turn.hashCode());
-        result = prime * result + (whiteCastleKingside ? 1231 : 1237);
-        result = prime * result + (whiteCastleQueenside ? 1231 : 1237);
         return result;
     }
 
@@ -0,0 +1,77 @@
+package com.chess.board;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses FEN strings, handing back the same Fen for a string seen recently instead of parsing it again. A Fen never
+ * changes once it is made (the setters return changed copies), so one can be shared by any number of callers and
+ * threads. The cache holds at most capacity strings and drops the least recently used when it is full.
+ *
+ * The hit and miss counts show whether the cache is worth its memory for a given load.
+ */
+public class FenCache {
+
+    private final Map<String, Fen> fens;
+    private long hits;
+    private long misses;
+
+    public FenCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+
+        fens = new LinkedHashMap<String, Fen>(capacity * 4 / 3 + 1, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Fen> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * returns the Fen for the string, parsing it only if it is not cached. Strings that fail to parse are not cached.
+     */
+    public Fen getFen(String fenString) throws FENFormatException {
+        synchronized (this) {
+            Fen fen = fens.get(fenString);
+            if (fen != null) {
+                hits++;
+                return fen;
+            }
+            misses++;
+        }
+
+        // parse without holding the lock, so other threads are not held up; if two threads parse the same string at
+        // once, the later one's Fen is kept
+        Fen fen = new Fen(fenString);
+        synchronized (this) {
+            fens.put(fenString, fen);
+        }
+        return fen;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return fens.size();
+    }
+
+    /**
+     * empties the cache and resets the counts.
+     */
+    public synchronized void clear() {
+        fens.clear();
+        hits = 0;
+        misses = 0;
+    }
+}
@@ -0,0 +1,121 @@
+package com.chess.board;
+
+import static com.chess.board.PieceType.King;
+import static com.chess.board.PieceType.Pawn;
+
+/**
+ * Packs a move into 16 bits: the start square in bits 0-5, the end square in bits 6-11, the promotion piece in bits
+ * 12-13 (Promotion.ordinal()) and the kind of move in bits 14-15. Squares are Square.ordinal(), the same index the
+ * Position bitboards use. Encoded moves are held in shorts (see MoveList) so that large numbers of them cost two bytes
+ * each instead of an object; the accessors take an int so a short can be passed straight in.
+ */
+public final class MoveEncoding {
+
+    public static final int NORMAL = 0;
+    public static final int PROMOTION = 1;
+    public static final int EN_PASSANT = 2;
+    public static final int CASTLING = 3;
+
+    /**
+     * encodes "no move". a1 to a1 is never a real move, so this can not be confused with one.
+     */
+    public static final short NONE = 0;
+
+    private static final Square[] squares = Square.values();
+    private static final Promotion[] promotions = Promotion.values();
+
+    private MoveEncoding() {
+    }
+
+    public static short encode(int from, int to, int kind, Promotion promotion) {
+        return (short) (from | to << 6 | (promotion == null ? 0 : promotion.ordinal()) << 12 | kind << 14);
+    }
+
+    /**
+     * encodes the move with the PROMOTION kind if it has a promotion piece, otherwise NORMAL. Use encode(Move, Position)
+     * when en passant captures and castling need to be told apart. A null move is encoded as NONE.
+     */
+    public static short encode(Move move) {
+        if (move == null) {
+            return NONE;
+        }
+
+        Promotion promotion = move.getPromotionPiece();
+        return encode(move.getStartSquare().ordinal(), move.getEndSquare().ordinal(), promotion == null ? NORMAL : PROMOTION,
+                      promotion);
+    }
+
+    /**
+     * encodes the move along with its kind, which is worked out from the position the move is played in.
+     */
+    public static short encode(Move move, Position position) {
+        if (move == null) {
+            return NONE;
+        }
+
+        Piece piece = position.get(move.getStartSquare());
+        int fileDiff = move.getEndSquare().getFile().ordinal() - move.getStartSquare().getFile().ordinal();
+        int kind = NORMAL;
+        if (move.getPromotionPiece() != null) {
+            kind = PROMOTION;
+        }
+        else if (piece != null && piece.getPieceType() == Pawn && fileDiff != 0 && position.get(move.getEndSquare()) == null) {
+            kind = EN_PASSANT;
+        }
+        else if (piece != null && piece.getPieceType() == King && Math.abs(fileDiff) == 2) {
+            kind = CASTLING;
+        }
+
+        return encode(move.getStartSquare().ordinal(), move.getEndSquare().ordinal(), kind, move.getPromotionPiece());
+    }
+
+    /**
+     * returns the move as a Move object, or null for NONE.
+     */
+    public static Move decode(int move) {
+        if ((short) move == NONE) {
+            return null;
+        }
+
+        return new Move(getStartSquare(move), getEndSquare(move), getPromotion(move));
+    }
+
+    public static int getFrom(int move) {
+        return move & 0x3F;
+    }
+
+    public static int getTo(int move) {
+        return move >>> 6 & 0x3F;
+    }
+
+    public static int getKind(int move) {
+        return move >>> 14 & 0x3;
+    }
+
+    public static Square getStartSquare(int move) {
+        return squares[getFrom(move)];
+    }
+
+    public static Square getEndSquare(int move) {
+        return squares[getTo(move)];
+    }
+
+    /**
+     * returns the promotion piece, or null if the move is not a promotion.
+     */
+    public static Promotion getPromotion(int move) {
+        return isPromotion(move) ? promotions[move >>> 12 & 0x3] : null;
+    }
+
+    public static boolean isPromotion(int move) {
+        return getKind(move) == PROMOTION;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return getKind(move) == EN_PASSANT;
+    }
+
+    public static boolean isCastling(int move) {
+        return getKind(move) == CASTLING;
+    }
+}
@@ -7,7 +7,10 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.chess.board.ECO.A00;
 
@@ -24,13 +27,16 @@ public class MoveHistory implements Serializable {
     private transient ECO eco = A00;
     private transient boolean calculateECO = true;
     private PositionTree currentMove = null;
+    // every position in the tree by Zobrist key, built when first needed. Every change to the tree made through the
+    // history keeps it up to date; it is dropped when the history is pointed at another tree.
+    private transient Map<Long, List<PositionTree>> positionIndex;
 
     public MoveHistory() {
         this(getDefaultFen());
     }
 
     public MoveHistory(Fen fenEncoding) {
-        this(new PositionTree(null, null, fenEncoding, null));
+        this(new PositionTree(null, null, fenEncoding, (String) null));
     }
 
     public MoveHistory(PositionTree startElement) {
@@ -55,7 +61,18 @@ public class MoveHistory implements Serializable {
     }
 
     public void addMove(Move move, Fen fen, String description) {
-        PositionTree newMoveElement = new PositionTree(currentMove, move, fen, description);
+        addMove(new PositionTree(currentMove, move, fen, description));
+    }
+
+    /**
+     * adds a move whose description is worked out with the rules the first time it is asked for.
+     */
+    void addMove(Move move, Fen fen, Rules rules) {
+        addMove(new PositionTree(currentMove, move, fen, rules));
+    }
+
+    private void addMove(PositionTree newMoveElement) {
+        Move move = newMoveElement.getLastMove();
         PositionTree existing = currentMove.getVariation(move);
         if (existing != null) {
             if (currentMove.getVariations().get(0) != existing) {
@@ -72,6 +89,9 @@ public class MoveHistory implements Serializable {
             currentMove.setShowVariations(true);
             currentMove.addVariation(newMoveElement);
             currentMove = newMoveElement;
+            if (positionIndex != null) {
+                index(newMoveElement);
+            }
 
             if (currentMove.isMainLine() && currentMove.getParentTree().getVariations().size() == 1)
                 calculateECO();
@@ -109,29 +129,41 @@ public class MoveHistory implements Serializable {
         return currentMove.getLastMove();
     }
 
+    /**
+     * a position can only repeat back to the last pawn move or capture, and only with the same side to move, so we
+     * only look at every second position within the half move counter. Zobrist keys rule out almost every position
+     * before we compare the Fens themselves.
+     */
     public boolean isThreeMoveRepetition() {
         if (currentMove == null)
             return false;
 
-        int count = 0;
         Fen currentFen = currentMove.getFen();
-        for (PositionTree move : getCurrentVariation()) {
-            if (move.getFen().equalsIgnoreMoveCount(currentFen)) {
-                count++;
-            }
+        long key = currentFen.getZobristKey();
+        int count = 1;
+        PositionTree previous = currentMove;
+        for (int plies = 2; plies <= currentFen.getHalfMovesSinceLastPawnMoveOrCapture(); plies += 2) {
+            previous = previous.getParentTree() == null ? null : previous.getParentTree().getParentTree();
+            if (previous == null)
+                break;
+
+            Fen fen = previous.getFen();
+            if (fen.getZobristKey() == key && fen.equalsIgnoreMoveCount(currentFen) && ++count > 2)
+                return true;
         }
 
-        return count > 2;
+        return false;
     }
 
     public List<PositionTree> getCurrentVariation() {
         List<PositionTree> variation = new ArrayList<PositionTree>();
         PositionTree next = currentMove;
         while (next != null) {
-            variation.add(0, next);
+            variation.add(next);
             next = next.getParentTree();
         }
 
+        Collections.reverse(variation);
         return variation;
     }
 
@@ -154,6 +186,7 @@ public class MoveHistory implements Serializable {
             fireSelectionChanged();
         }
         else {
+            positionIndex = null;
             calculateECO();
             fireHistoryChanged();
         }
@@ -165,9 +198,11 @@ public class MoveHistory implements Serializable {
 
     public void deleteCurrentMove() {
         if (currentMove.getParentTree() == null) {
+            unindexVariations(currentMove);
             currentMove.clearVariations();
         }
         else {
+            unindexSubTree(currentMove);
             currentMove.getParentTree().deleteVariation(currentMove);
             currentMove = currentMove.getParentTree();
         }
@@ -455,6 +490,74 @@ public class MoveHistory implements Serializable {
         }
     }
 
+    /**
+     * returns the position in the tree (in any variation) that is equal to the given Fen, or null if there is none.
+     */
+    public PositionTree getPositionTree(Fen fen) {
+        List<PositionTree> candidates = getPositionIndex().get(fen.getZobristKey());
+        if (candidates != null) {
+            for (PositionTree candidate : candidates) {
+                // the key is the same, so this only rules out a collision
+                if (candidate.getFen().equals(fen)) {
+                    return candidate;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private Map<Long, List<PositionTree>> getPositionIndex() {
+        if (positionIndex == null) {
+            positionIndex = new HashMap<Long, List<PositionTree>>();
+            indexSubTree(getInitialPosition());
+        }
+        return positionIndex;
+    }
+
+    private void indexSubTree(PositionTree position) {
+        index(position);
+        for (PositionTree variation : position.getVariations()) {
+            indexSubTree(variation);
+        }
+    }
+
+    private void index(PositionTree position) {
+        Long key = position.getFen().getZobristKey();
+        List<PositionTree> positions = positionIndex.get(key);
+        if (positions == null) {
+            positions = new ArrayList<PositionTree>(1);
+            positionIndex.put(key, positions);
+        }
+        positions.add(position);
+    }
+
+    private void unindexVariations(PositionTree position) {
+        for (PositionTree variation : position.getVariations()) {
+            unindexSubTree(variation);
+        }
+    }
+
+    private void unindexSubTree(PositionTree position) {
+        if (positionIndex == null) {
+            return;
+        }
+
+        List<PositionTree> positions = positionIndex.get(position.getFen().getZobristKey());
+        if (positions != null) {
+            for (int i = 0; i < positions.size(); i++) {
+                if (positions.get(i) == position) {
+                    positions.remove(i);
+                    break;
+                }
+            }
+            if (positions.isEmpty()) {
+                positionIndex.remove(position.getFen().getZobristKey());
+            }
+        }
+        unindexVariations(position);
+    }
+
     public PositionTree getEndOfMainLine() {
         PositionTree root = getInitialPosition();
         while (root.getVariations().size() > 0) {
@@ -466,6 +569,7 @@ public class MoveHistory implements Serializable {
     public void clearVariations() {
         PositionTree position = getCurrentPositionTree();
         if (position.getVariations().size() > 0) {
+            unindexVariations(position);
             position.clearVariations();
             fireHistoryChanged();
         }
@@ -0,0 +1,34 @@
+package com.chess.board;
+
+/**
+ * The outcome of checking a move against the rules: Legal, or the reason the move is illegal.
+ */
+public enum MoveLegality {
+    Legal("legal move"),
+    NoPieceOnStartSquare("there is no piece on the start square"),
+    NotPlayersTurn("it is the other player's turn to move"),
+    CapturesOwnPiece("a piece cannot capture a piece of its own color"),
+    IllegalPieceMovement("the piece cannot move that way"),
+    JumpsOverPiece("only knights can jump over pieces"),
+    PawnCapturesStraight("pawns can only capture diagonally"),
+    NoPromotionPiece("no promotion piece was specified for this move"),
+    CastlingOutOfCheck("castling out of check is illegal"),
+    CastlingNotAllowed("castling is illegal in this position"),
+    CastlingBlocked("castling is illegal with a piece between the king and rook"),
+    CastlingThroughCheck("castling through check is illegal"),
+    KingInCheck("the king would be in check");
+
+    private String description;
+
+    private MoveLegality(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isLegal() {
+        return this == Legal;
+    }
+}
@@ -0,0 +1,87 @@
+package com.chess.board;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable list of moves encoded with MoveEncoding, held in a short array so that no move needs an object of its own.
+ */
+public class MoveList {
+
+    private short[] moves;
+    private int size;
+
+    public MoveList() {
+        this(64);
+    }
+
+    public MoveList(int capacity) {
+        moves = new short[Math.max(1, capacity)];
+    }
+
+    /**
+     * creates a copy of the list, which can be changed without changing the original.
+     */
+    public MoveList(MoveList list) {
+        moves = Arrays.copyOf(list.moves, Math.max(1, list.size));
+        size = list.size;
+    }
+
+    public void add(short move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    public short get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return moves[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(short move) {
+        return indexOf(move) >= 0;
+    }
+
+    public int indexOf(short move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * decodes every move into a Move object, in list order.
+     */
+    public List<Move> toMoves() {
+        List<Move> result = new ArrayList<Move>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(MoveEncoding.decode(moves[i]));
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toMoves().toString();
+    }
+}
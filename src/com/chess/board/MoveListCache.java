@@ -0,0 +1,53 @@
+package com.chess.board;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the legal moves of recently seen positions, keyed by the Fen's Zobrist key. When it is full the
+ * least recently used position is dropped. A hit is checked with Fen.equalsIgnoreMoveCount(), so two positions sharing
+ * a key never see each other's moves. The cache can be shared between threads; the lists in it must not be changed.
+ */
+class MoveListCache {
+
+    private final Map<Long, CachedMoves> entries;
+
+    MoveListCache(final int capacity) {
+        entries = new LinkedHashMap<Long, CachedMoves>(capacity * 4 / 3 + 1, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedMoves> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * returns the cached moves of the position, or null if they are not cached.
+     */
+    synchronized MoveList get(Fen fen) {
+        CachedMoves entry = entries.get(fen.getZobristKey());
+        return entry != null && entry.fen.equalsIgnoreMoveCount(fen) ? entry.moves : null;
+    }
+
+    synchronized void put(Fen fen, MoveList moves) {
+        entries.put(fen.getZobristKey(), new CachedMoves(fen, moves));
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static class CachedMoves {
+
+        private final Fen fen;
+        private final MoveList moves;
+
+        CachedMoves(Fen fen, MoveList moves) {
+            this.fen = fen;
+            this.moves = moves;
+        }
+    }
+}
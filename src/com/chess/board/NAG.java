@@ -39,10 +39,16 @@ public enum NAG {
     private String description;
     private int encoding;
     private static final Map<Integer, NAG> encodingToNag = new HashMap<Integer, NAG>();
+    private static final Map<String, NAG> descriptionToNag = new HashMap<String, NAG>();
 
     static {
         for (NAG nag : NAG.values()) {
             encodingToNag.put(nag.encoding, nag);
+            // several NAGs share a description, the first one is used
+            String description = nag.description.trim();
+            if (description.length() > 0 && !descriptionToNag.containsKey(description)) {
+                descriptionToNag.put(description, nag);
+            }
         }
     }
 
@@ -59,6 +65,13 @@ public enum NAG {
         return encodingToNag.get(encoding);
     }
 
+    /**
+     * returns the NAG written as the given text after a move ("!?", "+/-", "zugzwang"), or null if there is none.
+     */
+    public static NAG getNAGForDescription(String description) {
+        return descriptionToNag.get(description);
+    }
+
     public int nagNumber() {
         return encoding;
     }
@@ -0,0 +1,91 @@
+package com.chess.board;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth ("perft"). The counts for well known positions are
+ * published, so this is the standard way to check a move generator, and timing it tells us how fast the rules are.
+ */
+public class Perft {
+
+    private final Rules rules;
+
+    public Perft() {
+        this(new ChessRules());
+    }
+
+    public Perft(Rules rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * counts the nodes below the board's current position. The moves are played with makeMove() and unmade again, so
+     * the board is left as it was.
+     */
+    public long perft(Board board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        List<Move> moves = rules.getLegalMoves(board);
+        if (depth == 1) {
+            return moves.size();
+        }
+
+        long nodes = 0;
+        for (Move move : moves) {
+            board.makeMove(move);
+            nodes += perft(board, depth - 1);
+            board.unmakeMove();
+        }
+
+        return nodes;
+    }
+
+    public long perft(Fen fen, int depth) {
+        return perft(newBoard(fen), depth);
+    }
+
+    /**
+     * returns the perft count below each legal move of the position, in move generation order. Comparing these with
+     * another move generator quickly narrows down which move is being generated wrongly.
+     */
+    public Map<Move, Long> divide(Fen fen, int depth) {
+        Board board = newBoard(fen);
+        Map<Move, Long> result = new LinkedHashMap<Move, Long>();
+        for (Move move : rules.getLegalMoves(board)) {
+            board.makeMove(move);
+            result.put(move, perft(board, depth - 1));
+            board.unmakeMove();
+        }
+
+        return result;
+    }
+
+    private Board newBoard(Fen fen) {
+        return new Board(fen).setRules(rules);
+    }
+
+    /**
+     * usage: Perft depth [fen]. Prints the divide counts, the total and the nodes per second.
+     */
+    public static void main(String[] args) {
+        int depth = Integer.parseInt(args[0]);
+        Fen fen = args.length > 1 ? new Fen(args[1]) : Fen.getDefaultFen();
+
+        long start = System.nanoTime();
+        long total = 0;
+        for (Entry<Move, Long> entry : new Perft().divide(fen, depth).entrySet()) {
+            System.out.println(entry.getKey().getLongAlgebraicNotation() + ": " + entry.getValue());
+            total += entry.getValue();
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+
+        System.out.println();
+        System.out.println("nodes: " + total);
+        System.out.println("nodes/second: " + total * 1000000000L / elapsed);
+    }
+}
@@ -26,6 +26,13 @@ public enum Piece {
     private final Color color;
     private final PieceType pieceType;
     private final String fenEncoding;
+    private static final Piece[][] piecesByColorAndType = new Piece[Color.values().length][PieceType.values().length];
+    
+    static {
+        for (Piece piece : values()) {
+            piecesByColorAndType[piece.color.ordinal()][piece.pieceType.ordinal()] = piece;
+        }
+    }
     
     private Piece(Color color, PieceType pieceType, String fenEncoding) {
         this.color = color;
@@ -46,7 +53,7 @@ public enum Piece {
     }
     
     public static Piece getPiece(Color turn, PieceType pieceType) {
-        return Piece.valueOf(turn.toString() + pieceType.toString());
+        return piecesByColorAndType[turn.ordinal()][pieceType.ordinal()];
     }
     
     public boolean isWhite() {
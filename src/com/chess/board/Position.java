@@ -2,35 +2,63 @@ package com.chess.board;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import static com.chess.board.PieceType.*;
 
+/**
+ * The placement of pieces on the board, stored as one 64-bit mask per piece (bit n is Square.values()[n]) plus an
+ * occupancy mask per color. Positions are treated as values: put() returns a modified copy and leaves this position alone.
+ * The Zobrist key of the placement is kept up to date as pieces are placed and removed.
+ */
 public class Position implements Cloneable, Serializable {
 
-    private static final long serialVersionUID = 1L;
-    private final Map<Square, Piece> pieceLocations = new HashMap<Square, Piece>();
+    private static final long serialVersionUID = 3L;
+    private static final Piece[] pieces = Piece.values();
+    private static final Square[] squares = Square.values();
+    // the entry in attackMaps with a bit set for each color whose map has been worked out
+    private static final int FILLED_MAPS = 2;
+
+    private final long[] pieceBitboards = new long[pieces.length];
+    private final long[] colorBitboards = new long[Color.values().length];
+    private long zobristKey;
+    // the squares attacked by each color, by Color ordinal, each worked out when first asked for; set() throws them away
+    private transient volatile long[] attackMaps;
 
     public Piece get(Square square) {
-        return pieceLocations.get(square);
+        if (square == null) {
+            return null;
+        }
+
+        long bit = 1L << square.ordinal();
+        if (((colorBitboards[0] | colorBitboards[1]) & bit) == 0) {
+            return null;
+        }
+
+        for (int i = 0; i < pieceBitboards.length; i++) {
+            if ((pieceBitboards[i] & bit) != 0) {
+                return pieces[i];
+            }
+        }
+
+        return null;
     }
 
     @SuppressWarnings("CloneDoesntCallSuperClone")
     @Override
     public Position clone() {
         Position copy = new Position();
-        synchronized (pieceLocations) {
-            copy.pieceLocations.putAll(this.pieceLocations);
-        }
+        System.arraycopy(pieceBitboards, 0, copy.pieceBitboards, 0, pieceBitboards.length);
+        System.arraycopy(colorBitboards, 0, copy.colorBitboards, 0, colorBitboards.length);
+        copy.zobristKey = zobristKey;
+        copy.attackMaps = attackMaps;
         return copy;
     }
 
     @Override
     public int hashCode() {
-        return pieceLocations.hashCode();
+        return (int) (zobristKey ^ (zobristKey >>> 32));
     }
 
     @Override
@@ -45,127 +73,121 @@ public class Position implements Cloneable, Serializable {
             return false;
         }
         Position other = (Position) obj;
-        if (!pieceLocations.equals(other.pieceLocations)) {
+        if (zobristKey != other.zobristKey) {
+            return false;
+        }
+        if (!Arrays.equals(pieceBitboards, other.pieceBitboards)) {
             return false;
         }
         return true;
     }
 
+    /**
+     * a 64-bit hash of the piece placement. Equal positions always have equal keys, and different positions almost
+     * never do. Fen.getZobristKey() adds the side to move, castling rights and en passant file.
+     */
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
     public boolean isInCheck(Color turn) {
-        Square kingSquare = findKing(turn);
-
-        // see if there is a pawn that can capture the king
-        Square[] pawnSquares = new Square[] { kingSquare.getRelativeSquare(1, turn.multiplier()),
-                                             kingSquare.getRelativeSquare(-1, turn.multiplier()) };
-        for (Square square : pawnSquares) {
-            Piece maybePawn = get(square); // null square is ok, we just get null back
-            if (maybePawn != null && maybePawn.getPieceType() == Pawn && maybePawn.getColor() == turn.getOppositeColor()) {
-                return true;
-            }
-        }
+        return getAttackers(findKing(turn), turn.getOppositeColor(), getOccupied()) != 0;
+    }
 
-        // see if there is a knight a knight-hop away
-        Square[] knightSquares = new Square[] { kingSquare.getRelativeSquare(2, 1), kingSquare.getRelativeSquare(1, 2),
-                                               kingSquare.getRelativeSquare(2, -1), kingSquare.getRelativeSquare(1, -2),
-                                               kingSquare.getRelativeSquare(-1, 2), kingSquare.getRelativeSquare(-2, 1),
-                                               kingSquare.getRelativeSquare(-2, -1), kingSquare.getRelativeSquare(-1, -2) };
-        for (Square square : knightSquares) {
-            Piece maybeKnight = get(square);
-            if (maybeKnight != null && maybeKnight.getPieceType() == Knight && maybeKnight.getColor() == turn.getOppositeColor()) {
-                return true;
-            }
-        }
+    /**
+     * returns true if any piece of the given color attacks the square. The squares the color attacks are worked out
+     * once, on the first call for that color, so later calls on the same position are a single lookup.
+     */
+    public boolean isSquareAttacked(Square square, Color color) {
+        return (getAttackMap(color) & (1L << square.ordinal())) != 0;
+    }
 
-        // see if there is a bishop / queen on a diagonal leading to the king
-        final PieceType[] diagonalPieces = new PieceType[] { Queen, Bishop };
-        if (canReachSquare(kingSquare, turn.getOppositeColor(), -1, 1, diagonalPieces)
-            || canReachSquare(kingSquare, turn.getOppositeColor(), 1, 1, diagonalPieces)
-            || canReachSquare(kingSquare, turn.getOppositeColor(), -1, -1, diagonalPieces)
-            || canReachSquare(kingSquare, turn.getOppositeColor(), 1, -1, diagonalPieces)) {
-            return true;
-        }
+    /**
+     * returns the number of pieces of the given color attacking the square. A piece standing behind another one on
+     * the same line is not counted, as it does not attack the square until the first one has moved.
+     */
+    public int countAttackers(Square square, Color color) {
+        return Long.bitCount(getAttackers(square.ordinal(), color, getOccupied()));
+    }
 
-        // see if there is a rook / queen on a rank / file leading to the king
-        final PieceType[] majorPieces = new PieceType[] { Queen, Rook };
-        if (canReachSquare(kingSquare, turn.getOppositeColor(), -1, 0, majorPieces)
-            || canReachSquare(kingSquare, turn.getOppositeColor(), 1, 0, majorPieces)
-            || canReachSquare(kingSquare, turn.getOppositeColor(), 0, -1, majorPieces)
-            || canReachSquare(kingSquare, turn.getOppositeColor(), 0, 1, majorPieces)) {
-            return true;
+    long getAttackMap(Color color) {
+        long[] maps = attackMaps;
+        int filled = 1 << color.ordinal();
+        if (maps == null || (maps[FILLED_MAPS] & filled) == 0) {
+            // positions are shared between threads, so a published array is never changed; a copy with the map
+            // filled in replaces it
+            maps = maps == null ? new long[FILLED_MAPS + 1] : maps.clone();
+            maps[color.ordinal()] = computeAttackMap(color);
+            maps[FILLED_MAPS] |= filled;
+            attackMaps = maps;
         }
 
-        // see if the enemy king can capture us!
-        Piece enemyKing = Piece.getPiece(turn.getOppositeColor(), PieceType.King);
-        if (get(kingSquare.getRelativeSquare(-1, -1)) == enemyKing || get(kingSquare.getRelativeSquare(-1, 0)) == enemyKing
-            || get(kingSquare.getRelativeSquare(-1, 1)) == enemyKing || get(kingSquare.getRelativeSquare(0, 1)) == enemyKing
-            || get(kingSquare.getRelativeSquare(0, -1)) == enemyKing || get(kingSquare.getRelativeSquare(1, -1)) == enemyKing
-            || get(kingSquare.getRelativeSquare(1, 1)) == enemyKing || get(kingSquare.getRelativeSquare(1, 0)) == enemyKing)
-            return true;
-
-        return false;
+        return maps[color.ordinal()];
     }
 
-    private Square findKing(Color turn) {
-        synchronized (pieceLocations) {
-            for (Square square : pieceLocations.keySet()) {
-                Piece piece = pieceLocations.get(square);
-                if (piece.getPieceType() == King && piece.getColor() == turn) {
-                    return square;
+    private long computeAttackMap(Color color) {
+        long occupied = getOccupied();
+        long result = 0;
+        for (PieceType type : PieceType.values()) {
+            long pieces = getBitboard(Piece.getPiece(color, type));
+            while (pieces != 0) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                switch (type) {
+                    case Pawn:
+                        result |= Bitboards.pawnAttacks(color, square);
+                        break;
+                    case Knight:
+                        result |= Bitboards.knightAttacks(square);
+                        break;
+                    case Bishop:
+                        result |= Bitboards.bishopAttacks(square, occupied);
+                        break;
+                    case Rook:
+                        result |= Bitboards.rookAttacks(square, occupied);
+                        break;
+                    case Queen:
+                        result |= Bitboards.queenAttacks(square, occupied);
+                        break;
+                    default:
+                        result |= Bitboards.kingAttacks(square);
+                        break;
                 }
+                pieces &= pieces - 1;
             }
         }
 
-        throw new IllegalStateException("No " + turn.toString().toLowerCase() + " king found!");
-    }
-
-    private boolean canReachSquare(Square square, Color color, int xInc, int yInc, PieceType[] pieceTypes) {
-        return searchForSquare(square, color, xInc, yInc, pieceTypes) != null;
+        return result;
     }
 
-    // searches for a piece of the given type and color, that can reach the given square with no pieces in between.
-    // xInc and yInc define the movement of the piece to that square, ie, -1, 0 would search along the rank of
-    // "square" to the left. 1,1 would search the diagonal to the top right of the given square, etc.
-    //
-    // returns the Square of the first piece matching the search (ie, "checking" the square in question),
-    // or null if no such piece is found.
-    private Square searchForSquare(Square square, Color color, int xInc, int yInc, PieceType[] pieceTypes) {
-        for (int i = 1; i < 8; i++) {
-            int nextFile = square.getFile().ordinal() + xInc * i;
-            if (nextFile < 0 || nextFile > 7) {
-                return null;
-            }
-
-            int nextRank = square.getRank().ordinal() + yInc * i;
-            if (nextRank < 0 || nextRank > 7) {
-                return null;
-            }
-
-            final Square nextSquare = Square.getSquare(File.values()[nextFile], Rank.values()[nextRank]);
-            Piece maybeEnemy = get(nextSquare);
-            if (maybeEnemy != null) {
-                if (maybeEnemy.getColor() != color) {
-                    return null;
-                }
-
-                for (PieceType type : pieceTypes) {
-                    if (type == maybeEnemy.getPieceType()) {
-                        return nextSquare;
-                    }
-                }
-
-                return null;
-            }
+    private int findKing(Color turn) {
+        long king = pieceBitboards[Piece.getPiece(turn, King).ordinal()];
+        if (king == 0) {
+            throw new IllegalStateException("No " + turn.toString().toLowerCase() + " king found!");
         }
 
-        return null;
+        return Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * returns the squares of all pieces of the given color attacking the square, with "occupied" deciding which
+     * squares block sliding pieces. Each kind of piece is one table lookup, looking outward from the square.
+     */
+    long getAttackers(int square, Color color, long occupied) {
+        long queens = getBitboard(Piece.getPiece(color, Queen));
+        return (Bitboards.pawnAttacks(color.getOppositeColor(), square) & getBitboard(Piece.getPiece(color, Pawn)))
+               | (Bitboards.knightAttacks(square) & getBitboard(Piece.getPiece(color, Knight)))
+               | (Bitboards.kingAttacks(square) & getBitboard(Piece.getPiece(color, King)))
+               | (Bitboards.bishopAttacks(square, occupied) & (getBitboard(Piece.getPiece(color, Bishop)) | queens))
+               | (Bitboards.rookAttacks(square, occupied) & (getBitboard(Piece.getPiece(color, Rook)) | queens));
     }
 
     public Collection<PieceLocation> getPieceLocations() {
-        Collection<PieceLocation> result = new ArrayList<PieceLocation>();
-        synchronized (pieceLocations) {
-            for (Entry<Square, Piece> entry : pieceLocations.entrySet()) {
-                result.add(new PieceLocation(entry.getValue(), entry.getKey()));
-            }
+        long occupied = getOccupied();
+        Collection<PieceLocation> result = new ArrayList<PieceLocation>(Long.bitCount(occupied));
+        while (occupied != 0) {
+            Square square = squares[Long.numberOfTrailingZeros(occupied)];
+            result.add(new PieceLocation(get(square), square));
+            occupied &= occupied - 1;
         }
 
         return result;
@@ -173,23 +195,55 @@ public class Position implements Cloneable, Serializable {
 
     public Position put(Square square, Piece piece) {
         Position result = clone();
-        synchronized (pieceLocations) {
-            if (piece == null) {
-                result.pieceLocations.remove(square);
-            }
-            else {
-                result.pieceLocations.put(square, piece);
-            }
-        }
-
+        result.set(square, piece);
         return result;
     }
 
     public Position put(Piece piece, Square... squares) {
         Position copy = clone();
         for (Square square : squares) {
-            copy.pieceLocations.put(square, piece);
+            copy.set(square, piece);
         }
         return copy;
     }
+
+    /**
+     * Places the piece on the square (or empties it for a null piece) in this position. Unlike put() this changes the
+     * position itself, so it is only for building positions that no one else has a reference to yet.
+     */
+    void set(Square square, Piece piece) {
+        if (attackMaps != null) {
+            attackMaps = null;
+        }
+
+        long bit = 1L << square.ordinal();
+        if (((colorBitboards[0] | colorBitboards[1]) & bit) != 0) {
+            for (int i = 0; i < pieceBitboards.length; i++) {
+                if ((pieceBitboards[i] & bit) != 0) {
+                    pieceBitboards[i] &= ~bit;
+                    zobristKey ^= Zobrist.piece(pieces[i], square.ordinal());
+                }
+            }
+            colorBitboards[0] &= ~bit;
+            colorBitboards[1] &= ~bit;
+        }
+
+        if (piece != null) {
+            pieceBitboards[piece.ordinal()] |= bit;
+            colorBitboards[piece.getColor().ordinal()] |= bit;
+            zobristKey ^= Zobrist.piece(piece, square.ordinal());
+        }
+    }
+
+    long getBitboard(Piece piece) {
+        return pieceBitboards[piece.ordinal()];
+    }
+
+    long getOccupied(Color color) {
+        return colorBitboards[color.ordinal()];
+    }
+
+    long getOccupied() {
+        return colorBitboards[0] | colorBitboards[1];
+    }
 }
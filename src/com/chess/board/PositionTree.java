@@ -1,5 +1,7 @@
 package com.chess.board;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -16,12 +18,15 @@ import java.util.TreeSet;
  */
 public class PositionTree implements Serializable {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
     // the FEN encoding of the board after the given move was played
     private final Fen fen;
-    private final Move lastMove;
-    private final String description;
+    // the move that led here, encoded with MoveEncoding (NONE for the start position)
+    private final short lastMove;
+    private String description;
+    // the rules to describe the move with, until the description has been worked out
+    private transient Rules describingRules;
     private final List<PositionTree> variations = new ArrayList<PositionTree>();
     private PositionTree parent;
     private String comment;
@@ -31,19 +36,28 @@ public class PositionTree implements Serializable {
 
     public PositionTree(PositionTree parent, Move move, Fen fen, String description) {
         this.parent = parent;
-        this.lastMove = move;
+        this.lastMove = MoveEncoding.encode(move);
         this.fen = fen;
         this.description = description;
     }
 
+    /**
+     * creates the tree for a move that is described only when getMoveDescription() is first called.
+     */
+    PositionTree(PositionTree parent, Move move, Fen fen, Rules rules) {
+        this(parent, move, fen, (String) null);
+        this.describingRules = rules;
+    }
+
+    // the description is left out of hashCode(), since reading it would describe every move hashed. equals() compares
+    // it only when both moves have already been described
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((comment == null) ? 0 : comment.hashCode());
-        result = prime * result + ((description == null) ? 0 : description.hashCode());
         result = prime * result + ((fen == null) ? 0 : fen.hashCode());
-        result = prime * result + ((lastMove == null) ? 0 : lastMove.hashCode());
+        result = prime * result + lastMove;
         result = prime * result + nagList.hashCode();
         result = prime * result + (showLine ? 1231 : 1237);
         result = prime * result + (showVariations ? 1231 : 1237);
@@ -66,23 +80,21 @@ public class PositionTree implements Serializable {
         }
         else if (!comment.equals(other.comment))
             return false;
-        if (description == null) {
-            if (other.description != null)
+        if (isDescribed() && other.isDescribed()) {
+            if (description == null) {
+                if (other.description != null)
+                    return false;
+            }
+            else if (!description.equals(other.description))
                 return false;
         }
-        else if (!description.equals(other.description))
-            return false;
         if (fen == null) {
             if (other.fen != null)
                 return false;
         }
         else if (!fen.equals(other.fen))
             return false;
-        if (lastMove == null) {
-            if (other.lastMove != null)
-                return false;
-        }
-        else if (!lastMove.equals(other.lastMove))
+        if (lastMove != other.lastMove)
             return false;
         if (!nagList.equals(other.nagList))
             return false;
@@ -97,7 +109,7 @@ public class PositionTree implements Serializable {
 
     @Override
     public String toString() {
-        return description == null ? "start position" : getMoveDescription();
+        return getMoveDescription() == null ? "start position" : getMoveDescription();
     }
 
     public PositionTree getParentTree() {
@@ -105,14 +117,23 @@ public class PositionTree implements Serializable {
     }
 
     public Move getLastMove() {
-        return lastMove;
+        return MoveEncoding.decode(lastMove);
     }
 
     public Fen getFen() {
         return fen;
     }
 
-    public String getMoveDescription() {
+    // once described, the description does not change again
+    private synchronized boolean isDescribed() {
+        return describingRules == null;
+    }
+
+    public synchronized String getMoveDescription() {
+        if (describingRules != null) {
+            description = new Board(parent.getFen()).setRules(describingRules).getMoveDescription(getLastMove());
+            describingRules = null;
+        }
         return description;
     }
 
@@ -126,9 +147,10 @@ public class PositionTree implements Serializable {
     }
 
     public PositionTree getVariation(Move move) {
+        short encoded = MoveEncoding.encode(move);
         synchronized (variations) {
             for (PositionTree element : variations) {
-                if (element.getLastMove().equals(move)) {
+                if (element.lastMove == encoded) {
                     return element;
                 }
             }
@@ -285,4 +307,10 @@ public class PositionTree implements Serializable {
 
         return moves;
     }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // the rules are not saved, so the description has to be
+        getMoveDescription();
+        out.defaultWriteObject();
+    }
 }
@@ -2,6 +2,7 @@ package com.chess.board;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 
 public interface Rules extends Serializable {
     
@@ -11,6 +12,8 @@ public interface Rules extends Serializable {
     
     public boolean isLegal(Move move, Board board);
     
+    public MoveLegality getLegality(Move move, Board board);
+    
     public boolean canAnyLegalMoveStartOn(Square square, Board board);
     
     public Move getAnyLegalMoveStartingOn(Square square, Board board);
@@ -28,4 +31,8 @@ public interface Rules extends Serializable {
     public boolean isCheckMate(Board board);
     
     public Move getAnyLegalMove(Board board);
+    
+    public List<Move> getLegalMoves(Board board);
+    
+    public MoveList getLegalMoveList(Board board);
 }
@@ -0,0 +1,180 @@
+package com.chess.board;
+
+import static com.chess.board.MoveEncoding.NONE;
+import static com.chess.board.PieceType.Bishop;
+import static com.chess.board.PieceType.King;
+import static com.chess.board.PieceType.Knight;
+import static com.chess.board.PieceType.Pawn;
+import static com.chess.board.PieceType.Queen;
+import static com.chess.board.PieceType.Rook;
+
+/**
+ * Reads a move in standard algebraic notation ("Nf3", "exd6", "c8=Q+", "O-O") and finds it in the list of legal moves
+ * in a single pass over the text, without building substrings. Long algebraic moves ("e2e4", "Ng1-f3") are read too.
+ *
+ * Reading stops at the first character that cannot be part of a move, so annotations after the move are ignored here;
+ * getMoveEnd() tells where they start.
+ */
+public final class SanParser {
+
+    private static final Square[] squares = Square.values();
+
+    private SanParser() {
+    }
+
+    /**
+     * returns the legal move the text describes, encoded as by MoveEncoding.
+     *
+     * @throws IllegalMoveException if the text is not a move, or is not exactly one of the legal moves
+     */
+    public static short parse(CharSequence san, Position position, MoveList legalMoves) throws IllegalMoveException {
+        int length = san.length();
+        if (length > 0 && (san.charAt(0) == 'O' || san.charAt(0) == '0')) {
+            return parseCastling(san, legalMoves);
+        }
+
+        PieceType pieceType = Pawn;
+        int i = 0;
+        if (length > 0 && getPieceType(san.charAt(0)) != null) {
+            pieceType = getPieceType(san.charAt(0));
+            i++;
+        }
+
+        // squares are read as they come; whatever comes before the last one is the start square or part of it
+        int fromFile = -1;
+        int fromRank = -1;
+        int toFile = -1;
+        int toRank = -1;
+        Promotion promotion = null;
+        for (; i < length; i++) {
+            char c = san.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = toFile;
+                fromRank = toRank;
+                toFile = c - 'a';
+                toRank = -1;
+            }
+            else if (c >= '1' && c <= '8' && toRank < 0) {
+                toRank = c - '1';
+            }
+            else if (c == '=' && i + 1 < length && isPromotionPiece(san.charAt(i + 1))) {
+                promotion = Promotion.fromChar(san.charAt(++i));
+                break;
+            }
+            else if (toRank >= 0 && getPieceType(c) != null && getPieceType(c) != King) {
+                promotion = Promotion.fromChar(c);
+                break;
+            }
+            else if (c != 'x' && c != '-' && c != ':') {
+                break;
+            }
+        }
+
+        if (toFile < 0 || toRank < 0) {
+            throw new IllegalMoveException("\"" + san + "\" is not a move");
+        }
+        if (pieceType == Pawn && fromFile < 0) {
+            fromFile = toFile;
+        }
+
+        int to = toFile * 8 + toRank;
+        short result = NONE;
+        for (int m = 0; m < legalMoves.size(); m++) {
+            short move = legalMoves.get(m);
+            int from = MoveEncoding.getFrom(move);
+            if (MoveEncoding.getTo(move) != to || (fromFile >= 0 && from / 8 != fromFile)
+                || (fromRank >= 0 && from % 8 != fromRank) || position.get(squares[from]).getPieceType() != pieceType) {
+                continue;
+            }
+            // a promotion without a piece is taken to be to a queen
+            Promotion movePromotion = MoveEncoding.isPromotion(move) ? MoveEncoding.getPromotion(move) : null;
+            if (movePromotion != promotion && !(promotion == null && movePromotion == Promotion.Queen)) {
+                continue;
+            }
+
+            if (result != NONE) {
+                throw new IllegalMoveException("\"" + san + "\" is ambiguous");
+            }
+            result = move;
+        }
+
+        if (result == NONE) {
+            throw new IllegalMoveException("\"" + san + "\" is not a legal move");
+        }
+        return result;
+    }
+
+    /**
+     * returns the index just past the move and any check or mate sign, which is where annotations such as "!?" or
+     * " e.p." start.
+     */
+    public static int getMoveEnd(CharSequence san) {
+        int length = san.length();
+        int i = 0;
+        while (i < length && isMoveCharacter(san, i)) {
+            i++;
+        }
+
+        // "+-" and "+/-" are evaluations, not checks
+        if (i < length && san.charAt(i) == '#') {
+            i++;
+        }
+        else if (i < length && san.charAt(i) == '+' && (i + 1 == length || "-/".indexOf(san.charAt(i + 1)) < 0)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isMoveCharacter(CharSequence san, int i) {
+        char c = san.charAt(i);
+        if (c == '=') {
+            return i + 1 < san.length() && isPromotionPiece(san.charAt(i + 1));
+        }
+
+        return (c >= 'a' && c <= 'h') || (c >= '1' && c <= '8') || getPieceType(c) != null || "xO0-:".indexOf(c) >= 0;
+    }
+
+    private static short parseCastling(CharSequence san, MoveList legalMoves) throws IllegalMoveException {
+        int letters = 0;
+        for (int i = 0; i < san.length() && (san.charAt(i) == 'O' || san.charAt(i) == '0' || san.charAt(i) == '-'); i++) {
+            if (san.charAt(i) != '-') {
+                letters++;
+            }
+        }
+        if (letters < 2 || letters > 3) {
+            throw new IllegalMoveException("\"" + san + "\" is not a move");
+        }
+
+        // the king goes to the g file castling short and the c file castling long
+        int kingFile = letters == 2 ? File.g.ordinal() : File.c.ordinal();
+        for (int m = 0; m < legalMoves.size(); m++) {
+            short move = legalMoves.get(m);
+            if (MoveEncoding.isCastling(move) && MoveEncoding.getTo(move) / 8 == kingFile) {
+                return move;
+            }
+        }
+
+        throw new IllegalMoveException("\"" + san + "\" is not a legal move");
+    }
+
+    private static boolean isPromotionPiece(char c) {
+        return "QRBNqrbn".indexOf(c) >= 0;
+    }
+
+    private static PieceType getPieceType(char c) {
+        switch (c) {
+            case 'K':
+                return King;
+            case 'Q':
+                return Queen;
+            case 'R':
+                return Rook;
+            case 'B':
+                return Bishop;
+            case 'N':
+                return Knight;
+            default:
+                return null;
+        }
+    }
+}
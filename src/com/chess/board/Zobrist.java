@@ -0,0 +1,66 @@
+package com.chess.board;
+
+import java.util.Random;
+
+/**
+ * The random numbers behind Position and Fen Zobrist keys. A key is the XOR of the number for every piece on its square,
+ * plus the numbers for the side to move, each castling right and the en passant file, so making a move only needs a
+ * few XORs to update it. The generator is seeded with a constant so keys are the same in every run and can be stored.
+ */
+final class Zobrist {
+
+    private static final long[][] pieceSquares = new long[Piece.values().length][64];
+    private static final long blackToMove;
+    private static final long whiteCastleKingside;
+    private static final long whiteCastleQueenside;
+    private static final long blackCastleKingside;
+    private static final long blackCastleQueenside;
+    private static final long[] enPassantFiles = new long[File.values().length];
+
+    static {
+        Random random = new Random(0x5DEECE66DL);
+        for (long[] squares : pieceSquares) {
+            for (int square = 0; square < squares.length; square++) {
+                squares[square] = random.nextLong();
+            }
+        }
+
+        blackToMove = random.nextLong();
+        whiteCastleKingside = random.nextLong();
+        whiteCastleQueenside = random.nextLong();
+        blackCastleKingside = random.nextLong();
+        blackCastleQueenside = random.nextLong();
+
+        for (int file = 0; file < enPassantFiles.length; file++) {
+            enPassantFiles[file] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    static long piece(Piece piece, int square) {
+        return pieceSquares[piece.ordinal()][square];
+    }
+
+    static long turn(Color turn) {
+        return turn == Color.Black ? blackToMove : 0;
+    }
+
+    static long castling(boolean whiteKingside, boolean whiteQueenside, boolean blackKingside, boolean blackQueenside) {
+        long result = 0;
+        if (whiteKingside)
+            result ^= whiteCastleKingside;
+        if (whiteQueenside)
+            result ^= whiteCastleQueenside;
+        if (blackKingside)
+            result ^= blackCastleKingside;
+        if (blackQueenside)
+            result ^= blackCastleQueenside;
+        return result;
+    }
+
+    static long enPassant(Square enPassantSquare) {
+        return enPassantSquare == null ? 0 : enPassantFiles[enPassantSquare.getFile().ordinal()];
+    }
+}
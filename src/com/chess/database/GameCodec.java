@@ -0,0 +1,231 @@
+package com.chess.database;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import com.chess.board.Board;
+import com.chess.board.ChessRules;
+import com.chess.board.Fen;
+import com.chess.board.IllegalMoveException;
+import com.chess.board.MoveEncoding;
+import com.chess.board.MoveHistory;
+import com.chess.board.MoveList;
+import com.chess.board.NAG;
+import com.chess.board.PositionTree;
+
+/**
+ * Encodes a game tree in a compact binary form. Each move is stored as a single byte, its index in the list of legal
+ * moves ChessRules generates for the position, so a game costs about a byte per move against the kilobytes per move
+ * of Java serialization. Decoding replays the moves on a new Board.
+ *
+ * The format is a version byte, the start position (a flag byte, followed by the FEN when it is not the normal start
+ * position), then a stream of move indices and markers in PGN order: a variation marker takes back the last move and
+ * starts the alternative to it, NAG and comment markers annotate the last move (or the start position before the first
+ * move), and the stream ends with an end marker. Strings are UTF-8, preceded by their length.
+ *
+ * Since a move is stored as an index, the stored games are only as stable as the order in which
+ * ChessRules.getLegalMoveList() lists the moves. Any change to that order must come with a new VERSION, or games
+ * stored before it will decode to different moves.
+ */
+public class GameCodec {
+
+    // raise this whenever the order of ChessRules.getLegalMoveList() changes, as the moves are indices into it
+    private static final int VERSION = 1;
+
+    private static final int STANDARD_START = 0;
+    private static final int FEN_START = 1;
+
+    // move indices are always below 0xF0; a position has at most 218 legal moves
+    static final int START_VARIATION = 0xF1;
+    static final int END_VARIATION = 0xF2;
+    static final int NAG_MARKER = 0xF3;
+    static final int COMMENT = 0xF4;
+    static final int END_OF_GAME = 0xF5;
+
+    // from, to and promotion; the kind of move is not stored in a PositionTree
+    private static final int MOVE_MASK = 0x3FFF;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ChessRules rules = new ChessRules();
+
+    public byte[] encode(MoveHistory history) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PositionTree start = history.getInitialPosition();
+
+        out.write(VERSION);
+        if (start.getFen().equals(Fen.getDefaultFen())) {
+            out.write(STANDARD_START);
+        }
+        else {
+            out.write(FEN_START);
+            writeString(out, start.getFen().getFenString());
+        }
+
+        writeComment(out, start);
+        writeLine(out, start);
+        out.write(END_OF_GAME);
+        return out.toByteArray();
+    }
+
+    public Board decode(byte[] game) {
+        return decode(ByteBuffer.wrap(game));
+    }
+
+    /**
+     * decodes the game starting at the buffer's position, leaving the position just past the end of the game.
+     */
+    public Board decode(ByteBuffer game) {
+        try {
+            int version = game.get() & 0xFF;
+            if (version != VERSION) {
+                throw new GameFormatException("unknown game format version " + version);
+            }
+
+            int start = game.get() & 0xFF;
+            if (start != STANDARD_START && start != FEN_START) {
+                throw new GameFormatException("unknown start position type " + start);
+            }
+            Board board = start == FEN_START ? new Board(new Fen(readString(game))) : new Board();
+
+            readMoves(game, board);
+            return board;
+        }
+        catch (BufferUnderflowException bue) {
+            throw new GameFormatException("the game ends before its end marker", bue);
+        }
+    }
+
+    private void readMoves(ByteBuffer game, Board board) {
+        MoveHistory history = board.getMoveHistory();
+        Deque<PositionTree> variations = new ArrayDeque<PositionTree>();
+        for (int token = game.get() & 0xFF; token != END_OF_GAME; token = game.get() & 0xFF) {
+            switch (token) {
+                case START_VARIATION:
+                    PositionTree current = history.getCurrentPositionTree();
+                    if (current.getParentTree() == null) {
+                        throw new GameFormatException("variation before the first move");
+                    }
+                    variations.push(current);
+                    history.setCurrentPositionTree(current.getParentTree());
+                    break;
+                case END_VARIATION:
+                    if (variations.isEmpty()) {
+                        throw new GameFormatException("end of a variation that was not started");
+                    }
+                    history.setCurrentPositionTree(variations.pop());
+                    break;
+                case NAG_MARKER:
+                    int encoding = game.get() & 0xFF;
+                    NAG nag = NAG.getNAGForEncoding(encoding);
+                    if (nag == null) {
+                        throw new GameFormatException("unknown NAG " + encoding);
+                    }
+                    history.getCurrentPositionTree().addNAG(nag);
+                    break;
+                case COMMENT:
+                    history.getCurrentPositionTree().setComment(readString(game));
+                    break;
+                default:
+                    playMove(board, token);
+            }
+        }
+
+        if (!variations.isEmpty()) {
+            throw new GameFormatException("unterminated variation");
+        }
+    }
+
+    private void playMove(Board board, int index) {
+        try {
+            board.moveByIndex(index);
+        }
+        catch (IllegalMoveException ime) {
+            throw new GameFormatException(ime.getMessage(), ime);
+        }
+    }
+
+    // the moves after the position, main line first; only variations recurse
+    private void writeLine(ByteArrayOutputStream out, PositionTree position) {
+        while (!position.getVariations().isEmpty()) {
+            List<PositionTree> moves = position.getVariations();
+            PositionTree main = moves.get(0);
+            writeMove(out, position, main);
+
+            for (int i = 1; i < moves.size(); i++) {
+                out.write(START_VARIATION);
+                writeMove(out, position, moves.get(i));
+                writeLine(out, moves.get(i));
+                out.write(END_VARIATION);
+            }
+
+            position = main;
+        }
+    }
+
+    private void writeMove(ByteArrayOutputStream out, PositionTree position, PositionTree move) {
+        int encoded = MoveEncoding.encode(move.getLastMove()) & MOVE_MASK;
+        MoveList moves = rules.getLegalMoveList(position.getFen());
+        int index = 0;
+        while (index < moves.size() && (moves.get(index) & MOVE_MASK) != encoded) {
+            index++;
+        }
+        if (index == moves.size()) {
+            throw new IllegalArgumentException(move.getLastMove() + " is not legal in " + position.getFen());
+        }
+
+        out.write(index);
+        for (NAG nag : move.getNAGs()) {
+            out.write(NAG_MARKER);
+            out.write(nag.nagNumber());
+        }
+        writeComment(out, move);
+    }
+
+    private void writeComment(ByteArrayOutputStream out, PositionTree position) {
+        if (position.getComment() != null) {
+            out.write(COMMENT);
+            writeString(out, position.getComment());
+        }
+    }
+
+    private void writeString(ByteArrayOutputStream out, String string) {
+        byte[] bytes = string.getBytes(UTF8);
+        writeLength(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readLength(in)];
+        in.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    // seven bits at a time, low bits first, with the top bit set on all but the last byte
+    private void writeLength(ByteArrayOutputStream out, int length) {
+        while (length >= 0x80) {
+            out.write(length & 0x7F | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+    }
+
+    private int readLength(ByteBuffer in) {
+        int length = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.get() & 0xFF;
+            length |= (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return length;
+            }
+            if (shift > 21) {
+                throw new GameFormatException("string length is too long");
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.chess.database;
+
+public class GameFormatException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public GameFormatException(String message) {
+        super(message);
+    }
+
+    public GameFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,164 @@
+package com.chess.database;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import com.chess.board.Board;
+import com.chess.board.MoveHistory;
+
+/**
+ * An append-only file of games encoded with GameCodec, with an index file holding the offset of each game (8 bytes a
+ * game, so the offset of game n is at n * 8). Games are read through a memory map of the data file, so fetching a game
+ * reads only the bytes of that game and costs no copying beyond decoding its moves. Games added after the map was made
+ * are read with a plain file read until the unmapped part is as large as the mapped one; only then is the file mapped
+ * again, so a reader following a growing store makes only a few maps.
+ *
+ * Games are numbered from 0 in the order they were added. Games can be added and read from several threads at once.
+ * A game's data is written before its index entry, so a crash part way through adding a game can leave unused bytes at
+ * the end of the data file but never an index entry for a partly written game. The data file is limited to 2 GB, the
+ * largest file a single map can cover.
+ */
+public class GameStore implements Closeable {
+
+    private static final int OFFSET_SIZE = 8;
+
+    private final GameCodec codec = new GameCodec();
+    private final RandomAccessFile dataFile;
+    private final RandomAccessFile indexFile;
+    private final FileChannel data;
+    private final FileChannel index;
+
+    private int size;
+    private long dataSize;
+    // replaced by a larger map once the games added after it was made take up as much space as it covers
+    private MappedByteBuffer dataMap;
+
+    /**
+     * opens the store in the given file, creating it if it does not exist. The index is kept beside it, in the same
+     * file name with ".index" added.
+     */
+    public GameStore(File file) throws IOException {
+        dataFile = new RandomAccessFile(file, "rw");
+        indexFile = new RandomAccessFile(new File(file.getPath() + ".index"), "rw");
+        data = dataFile.getChannel();
+        index = indexFile.getChannel();
+
+        // a partly written index entry is dropped
+        size = (int) (index.size() / OFFSET_SIZE);
+        index.truncate((long) size * OFFSET_SIZE);
+        dataSize = data.size();
+    }
+
+    /**
+     * adds the game and returns its id.
+     */
+    public int add(MoveHistory history) throws IOException {
+        return add(codec.encode(history));
+    }
+
+    /**
+     * adds a game already encoded with GameCodec and returns its id.
+     */
+    public synchronized int add(byte[] game) throws IOException {
+        if (dataSize + game.length > Integer.MAX_VALUE) {
+            throw new IOException("the game store is full");
+        }
+
+        writeFully(data, ByteBuffer.wrap(game), dataSize);
+        ByteBuffer offset = ByteBuffer.allocate(OFFSET_SIZE);
+        offset.putLong(0, dataSize);
+        writeFully(index, offset, (long) size * OFFSET_SIZE);
+
+        dataSize += game.length;
+        return size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public Board getGame(int id) throws IOException {
+        return codec.decode(getEncodedGame(id));
+    }
+
+    /**
+     * returns a buffer positioned at the start of the encoded game. The game runs to its end marker; the buffer may go
+     * on past it.
+     */
+    public ByteBuffer getEncodedGame(int id) throws IOException {
+        long offset;
+        long end;
+        ByteBuffer map;
+        synchronized (this) {
+            if (id < 0 || id >= size) {
+                throw new IndexOutOfBoundsException("game " + id + ", size " + size);
+            }
+            offset = readOffset(id);
+            end = id + 1 < size ? readOffset(id + 1) : dataSize;
+            long mapped = dataMap == null ? 0 : dataMap.capacity();
+            if (end > mapped && dataSize >= 2 * mapped) {
+                dataMap = data.map(MapMode.READ_ONLY, 0, dataSize);
+            }
+            map = dataMap;
+        }
+
+        if (map != null && end <= map.capacity()) {
+            ByteBuffer gameData = map.duplicate();
+            gameData.position((int) offset);
+            return gameData;
+        }
+
+        // added since the map was made
+        ByteBuffer gameData = ByteBuffer.allocate((int) (end - offset));
+        readFully(data, gameData, offset);
+        gameData.flip();
+        return gameData;
+    }
+
+    private long readOffset(int id) throws IOException {
+        ByteBuffer offset = ByteBuffer.allocate(OFFSET_SIZE);
+        readFully(index, offset, (long) id * OFFSET_SIZE);
+        return offset.getLong(0);
+    }
+
+    /**
+     * forces the games added so far out to the disk.
+     */
+    public synchronized void flush() throws IOException {
+        data.force(false);
+        index.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        dataMap = null;
+        try {
+            dataFile.close();
+        }
+        finally {
+            indexFile.close();
+        }
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("unexpected end of file at " + position);
+            }
+            position += read;
+        }
+    }
+
+    private void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.chess.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.chess.board.Fen;
+import com.chess.board.Move;
+import com.chess.board.MoveEncoding;
+import com.chess.board.MoveHistory;
+import com.chess.board.PositionTree;
+import com.chess.pgn.PgnGame;
+import com.chess.pgn.PgnGameListener;
+
+/**
+ * Totals, for each position of the opening, the moves played from it: how often, how the games ended and the average
+ * rating of the players. The totals are added to as each game is imported, so a query is a single map lookup whatever
+ * the number of games; as a PgnGameListener it can be handed straight to a PgnReader or PgnImporter, and games can be
+ * added from several threads at once.
+ *
+ * Positions are matched with PositionIndex.getKey(), so transpositions are counted together. Only the first maxPly
+ * moves of each game's main line are counted, which keeps the memory used to the opening.
+ */
+public class OpeningExplorer implements PgnGameListener {
+
+    private static final Comparator<MoveStatistics> MOST_PLAYED_FIRST = new Comparator<MoveStatistics>() {
+
+        @Override
+        public int compare(MoveStatistics first, MoveStatistics second) {
+            return first.getGames() > second.getGames() ? -1 : first.getGames() == second.getGames() ? 0 : 1;
+        }
+    };
+
+    private final int maxPly;
+    // position key to the totals for each move played from it, keyed by MoveEncoding
+    private final ConcurrentMap<Long, ConcurrentMap<Short, Totals>> positions =
+            new ConcurrentHashMap<Long, ConcurrentMap<Short, Totals>>();
+
+    public OpeningExplorer() {
+        this(40);
+    }
+
+    public OpeningExplorer(int maxPly) {
+        this.maxPly = maxPly;
+    }
+
+    @Override
+    public void acceptGame(PgnGame game) {
+        addGame(game.getMoveHistory(), game.getResult(), parseRating(game.getHeader("WhiteElo")),
+                parseRating(game.getHeader("BlackElo")));
+    }
+
+    /**
+     * adds the moves of the game's main line. The result is "1-0", "0-1", "1/2-1/2" or "*"; a rating of 0 is unknown.
+     */
+    public void addGame(MoveHistory history, String result, int whiteRating, int blackRating) {
+        PositionTree position = history.getInitialPosition();
+        for (int ply = 0; ply < maxPly && !position.getVariations().isEmpty(); ply++) {
+            PositionTree next = position.getVariations().get(0);
+            getTotals(position.getFen(), MoveEncoding.encode(next.getLastMove())).add(result, whiteRating, blackRating);
+            position = next;
+        }
+    }
+
+    /**
+     * returns the moves played from the position, most played first.
+     */
+    public List<MoveStatistics> getMoves(Fen fen) {
+        Map<Short, Totals> moves = positions.get(PositionIndex.getKey(fen));
+        if (moves == null) {
+            return Collections.emptyList();
+        }
+
+        List<MoveStatistics> result = new ArrayList<MoveStatistics>(moves.size());
+        for (Map.Entry<Short, Totals> move : moves.entrySet()) {
+            result.add(move.getValue().getStatistics(MoveEncoding.decode(move.getKey())));
+        }
+        Collections.sort(result, MOST_PLAYED_FIRST);
+        return result;
+    }
+
+    /**
+     * returns the number of positions that have moves counted.
+     */
+    public int size() {
+        return positions.size();
+    }
+
+    private Totals getTotals(Fen fen, short move) {
+        Long key = PositionIndex.getKey(fen);
+        ConcurrentMap<Short, Totals> moves = positions.get(key);
+        if (moves == null) {
+            ConcurrentMap<Short, Totals> added = new ConcurrentHashMap<Short, Totals>(4, 0.75f, 1);
+            moves = positions.putIfAbsent(key, added);
+            if (moves == null) {
+                moves = added;
+            }
+        }
+
+        Totals totals = moves.get(move);
+        if (totals == null) {
+            Totals added = new Totals();
+            totals = moves.putIfAbsent(move, added);
+            if (totals == null) {
+                totals = added;
+            }
+        }
+        return totals;
+    }
+
+    private int parseRating(String rating) {
+        try {
+            return rating == null ? 0 : Math.max(0, Integer.parseInt(rating.trim()));
+        }
+        catch (NumberFormatException nfe) {
+            // "?" or "-" for an unrated player
+            return 0;
+        }
+    }
+
+    /**
+     * The running totals for a move, changed under its own lock.
+     */
+    private static class Totals {
+
+        private long games;
+        private long whiteWins;
+        private long draws;
+        private long blackWins;
+        private long ratingTotal;
+        private long ratings;
+
+        synchronized void add(String result, int whiteRating, int blackRating) {
+            games++;
+            if ("1-0".equals(result)) {
+                whiteWins++;
+            }
+            else if ("0-1".equals(result)) {
+                blackWins++;
+            }
+            else if ("1/2-1/2".equals(result)) {
+                draws++;
+            }
+
+            addRating(whiteRating);
+            addRating(blackRating);
+        }
+
+        private void addRating(int rating) {
+            if (rating > 0) {
+                ratingTotal += rating;
+                ratings++;
+            }
+        }
+
+        synchronized MoveStatistics getStatistics(Move move) {
+            return new MoveStatistics(move, games, whiteWins, draws, blackWins,
+                                      ratings == 0 ? 0 : (int) Math.round((double) ratingTotal / ratings));
+        }
+    }
+
+    /**
+     * How often a move was played from a position and how those games went. Games with an unknown result count towards
+     * getGames() only.
+     */
+    public static class MoveStatistics {
+
+        private final Move move;
+        private final long games;
+        private final long whiteWins;
+        private final long draws;
+        private final long blackWins;
+        private final int averageRating;
+
+        public MoveStatistics(Move move, long games, long whiteWins, long draws, long blackWins, int averageRating) {
+            this.move = move;
+            this.games = games;
+            this.whiteWins = whiteWins;
+            this.draws = draws;
+            this.blackWins = blackWins;
+            this.averageRating = averageRating;
+        }
+
+        public Move getMove() {
+            return move;
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public long getWhiteWins() {
+            return whiteWins;
+        }
+
+        public long getDraws() {
+            return draws;
+        }
+
+        public long getBlackWins() {
+            return blackWins;
+        }
+
+        /**
+         * the average rating of the rated players in the games, or 0 if none were rated.
+         */
+        public int getAverageRating() {
+            return averageRating;
+        }
+
+        @Override
+        public String toString() {
+            return move + ": " + games + " games, +" + whiteWins + " =" + draws + " -" + blackWins + ", rating "
+                   + averageRating;
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package com.chess.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.chess.board.Fen;
+import com.chess.board.MoveHistory;
+import com.chess.board.Piece;
+import com.chess.board.PieceType;
+import com.chess.board.PositionTree;
+import com.chess.board.Square;
+
+/**
+ * An on-disk index from positions to the games that reached them. Each record is a position's key (see getKey()), a
+ * game id and the ply (half-move number, 0 for the start position) at which the game reached the position. The
+ * records are sorted by key, so a lookup is a binary search over the memory-mapped file followed by a scan of the
+ * matching records, touching only a few pages however many games are indexed.
+ *
+ * Indexes are written by a Builder, usually fed from a PgnImporter listener. Two different positions could in theory
+ * share a 64-bit key; a caller that cannot accept that can check the position by replaying the game to the ply.
+ */
+public class PositionIndex implements Closeable {
+
+    // key (8 bytes), game id (4 bytes) and ply (2 bytes)
+    static final int RECORD_SIZE = 14;
+    // a map can not be larger than 2 GB, so big indexes are mapped in segments of whole records
+    private static final int RECORDS_PER_SEGMENT = Integer.MAX_VALUE / RECORD_SIZE;
+
+    private final RandomAccessFile file;
+    private final long size;
+    private final MappedByteBuffer[] segments;
+
+    public PositionIndex(File indexFile) throws IOException {
+        file = new RandomAccessFile(indexFile, "r");
+        FileChannel channel = file.getChannel();
+        size = channel.size() / RECORD_SIZE;
+
+        segments = new MappedByteBuffer[(int) ((size + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT)];
+        for (int i = 0; i < segments.length; i++) {
+            long first = (long) i * RECORDS_PER_SEGMENT;
+            long records = Math.min(RECORDS_PER_SEGMENT, size - first);
+            segments[i] = channel.map(MapMode.READ_ONLY, first * RECORD_SIZE, records * RECORD_SIZE);
+        }
+    }
+
+    /**
+     * returns the number of records, one for each position of each game.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * returns where the position was reached, ordered by game id and then ply.
+     */
+    public List<Occurrence> find(Fen fen) {
+        return find(getKey(fen));
+    }
+
+    public List<Occurrence> find(long key) {
+        List<Occurrence> result = new ArrayList<Occurrence>();
+        for (long i = findFirst(key); i < size && getKey(i) == key; i++) {
+            result.add(new Occurrence(getGameId(i), getPly(i)));
+        }
+
+        return result;
+    }
+
+    /**
+     * returns the ids of the games that reached the position, in ascending order, each once.
+     */
+    public int[] findGames(Fen fen) {
+        long key = getKey(fen);
+        int[] games = new int[16];
+        int count = 0;
+        for (long i = findFirst(key); i < size && getKey(i) == key; i++) {
+            int gameId = getGameId(i);
+            if (count > 0 && games[count - 1] == gameId) {
+                continue;
+            }
+            if (count == games.length) {
+                games = Arrays.copyOf(games, count * 2);
+            }
+            games[count++] = gameId;
+        }
+
+        return Arrays.copyOf(games, count);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * returns the key a position is indexed under. This is the Fen's Zobrist key, except that an en passant square is
+     * left out when no pawn can capture on it, so that a position reached by a double pawn move matches the same
+     * position reached another way.
+     */
+    public static long getKey(Fen fen) {
+        Square enPassant = fen.getEnPassantSquare();
+        if (enPassant == null) {
+            return fen.getZobristKey();
+        }
+
+        Piece capturer = Piece.getPiece(fen.getTurn(), PieceType.Pawn);
+        int rankOffset = -fen.getTurn().multiplier();
+        Square left = enPassant.getRelativeSquare(-1, rankOffset);
+        Square right = enPassant.getRelativeSquare(1, rankOffset);
+        if ((left != null && fen.getPosition().get(left) == capturer)
+            || (right != null && fen.getPosition().get(right) == capturer)) {
+            return fen.getZobristKey();
+        }
+        return fen.setEnPassantSquare(null).getZobristKey();
+    }
+
+    // the index of the first record with the key, or of the first record with a larger key if there is none
+    private long findFirst(long key) {
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (getKey(middle) < key) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private long getKey(long record) {
+        return segment(record).getLong(offset(record));
+    }
+
+    private int getGameId(long record) {
+        return segment(record).getInt(offset(record) + 8);
+    }
+
+    private int getPly(long record) {
+        return segment(record).getShort(offset(record) + 12) & 0xFFFF;
+    }
+
+    private MappedByteBuffer segment(long record) {
+        return segments[(int) (record / RECORDS_PER_SEGMENT)];
+    }
+
+    private int offset(long record) {
+        return (int) (record % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+    }
+
+    /**
+     * A place a position was reached: the game and the ply within it.
+     */
+    public static class Occurrence {
+
+        private final int gameId;
+        private final int ply;
+
+        public Occurrence(int gameId, int ply) {
+            this.gameId = gameId;
+            this.ply = ply;
+        }
+
+        public int getGameId() {
+            return gameId;
+        }
+
+        public int getPly() {
+            return ply;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * gameId + ply;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Occurrence))
+                return false;
+            Occurrence other = (Occurrence) obj;
+            return gameId == other.gameId && ply == other.ply;
+        }
+
+        @Override
+        public String toString() {
+            return "game " + gameId + " ply " + ply;
+        }
+    }
+
+    /**
+     * Collects records and writes them out as a sorted index. Records are held in memory until there are
+     * runLength of them, then sorted and written to a temporary run file beside the index; build() merges the runs.
+     * This way an index of any size can be built with a fixed amount of memory. Games can be added from several
+     * threads at once.
+     */
+    public static class Builder {
+
+        private final File indexFile;
+        private final int runLength;
+        private final List<File> runs = new ArrayList<File>();
+        private long[] keys;
+        // game id in the high bits, ply in the low 16
+        private long[] postings;
+        private int count;
+
+        public Builder(File indexFile) {
+            this(indexFile, 1 << 20);
+        }
+
+        public Builder(File indexFile, int runLength) {
+            this.indexFile = indexFile;
+            this.runLength = runLength;
+            keys = new long[runLength];
+            postings = new long[runLength];
+        }
+
+        /**
+         * adds every position of the game's main line, from the start position on.
+         */
+        public void addGame(int gameId, MoveHistory history) throws IOException {
+            PositionTree position = history.getInitialPosition();
+            for (int ply = 0;; ply++) {
+                add(getKey(position.getFen()), gameId, ply);
+                if (position.getVariations().isEmpty()) {
+                    break;
+                }
+                position = position.getVariations().get(0);
+            }
+        }
+
+        public synchronized void add(long key, int gameId, int ply) throws IOException {
+            if (ply > 0xFFFF) {
+                // games that long are not real games; their later positions are left out
+                return;
+            }
+
+            keys[count] = key;
+            postings[count] = (long) gameId << 16 | ply;
+            if (++count == runLength) {
+                writeRun();
+            }
+        }
+
+        /**
+         * writes the index and returns it, opened for searching.
+         */
+        public synchronized PositionIndex build() throws IOException {
+            if (runs.isEmpty()) {
+                sort(0, count - 1);
+                DataOutputStream out = openOutput(indexFile);
+                try {
+                    for (int i = 0; i < count; i++) {
+                        writeRecord(out, keys[i], postings[i]);
+                    }
+                }
+                finally {
+                    out.close();
+                }
+            }
+            else {
+                if (count > 0) {
+                    writeRun();
+                }
+                merge();
+            }
+
+            count = 0;
+            return new PositionIndex(indexFile);
+        }
+
+        private void writeRun() throws IOException {
+            sort(0, count - 1);
+            File run = File.createTempFile(indexFile.getName(), ".run", indexFile.getAbsoluteFile().getParentFile());
+            runs.add(run);
+
+            DataOutputStream out = openOutput(run);
+            try {
+                for (int i = 0; i < count; i++) {
+                    writeRecord(out, keys[i], postings[i]);
+                }
+            }
+            finally {
+                out.close();
+            }
+            count = 0;
+        }
+
+        private void merge() throws IOException {
+            PriorityQueue<Run> queue = new PriorityQueue<Run>();
+            DataOutputStream out = openOutput(indexFile);
+            try {
+                for (File file : runs) {
+                    Run run = new Run(file);
+                    if (run.next()) {
+                        queue.add(run);
+                    }
+                    else {
+                        run.close();
+                    }
+                }
+
+                while (!queue.isEmpty()) {
+                    Run run = queue.poll();
+                    writeRecord(out, run.key, run.posting);
+                    if (run.next()) {
+                        queue.add(run);
+                    }
+                    else {
+                        run.close();
+                    }
+                }
+            }
+            finally {
+                out.close();
+                for (Run run : queue) {
+                    run.close();
+                }
+                for (File run : runs) {
+                    run.delete();
+                }
+                runs.clear();
+            }
+        }
+
+        private DataOutputStream openOutput(File file) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        }
+
+        private void writeRecord(DataOutputStream out, long key, long posting) throws IOException {
+            out.writeLong(key);
+            out.writeInt((int) (posting >>> 16));
+            out.writeShort((int) posting);
+        }
+
+        // quicksort of the two arrays together, by key and then posting
+        private void sort(int low, int high) {
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                long pivotKey = keys[middle];
+                long pivotPosting = postings[middle];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (compare(keys[i], postings[i], pivotKey, pivotPosting) < 0) {
+                        i++;
+                    }
+                    while (compare(keys[j], postings[j], pivotKey, pivotPosting) > 0) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+
+                // recurse into the smaller half, so the stack stays shallow
+                if (j - low < high - i) {
+                    sort(low, j);
+                    low = i;
+                }
+                else {
+                    sort(i, high);
+                    high = j;
+                }
+            }
+        }
+
+        private void swap(int i, int j) {
+            long key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+            long posting = postings[i];
+            postings[i] = postings[j];
+            postings[j] = posting;
+        }
+
+        static int compare(long key, long posting, long otherKey, long otherPosting) {
+            if (key != otherKey) {
+                return key < otherKey ? -1 : 1;
+            }
+            return posting < otherPosting ? -1 : posting == otherPosting ? 0 : 1;
+        }
+    }
+
+    /**
+     * A sorted run file being merged, positioned on its current record.
+     */
+    private static class Run implements Comparable<Run> {
+
+        private final DataInputStream in;
+        private long key;
+        private long posting;
+
+        Run(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            try {
+                key = in.readLong();
+                posting = (long) in.readInt() << 16 | in.readShort() & 0xFFFF;
+                return true;
+            }
+            catch (EOFException eof) {
+                return false;
+            }
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public int compareTo(Run other) {
+            return Builder.compare(key, posting, other.key, other.posting);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.chess.pgn;
+
+public class PGNFormatException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public PGNFormatException(String message) {
+        super(message);
+    }
+    
+    public PGNFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,52 @@
+package com.chess.pgn;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.chess.board.Board;
+import com.chess.board.MoveHistory;
+
+/**
+ * A game read from PGN: the tag pairs in the order they appeared, and a Board whose move history holds the moves,
+ * variations, comments and NAGs.
+ */
+public class PgnGame {
+
+    private final Map<String, String> headers;
+    private final Board board;
+
+    public PgnGame(Map<String, String> headers, Board board) {
+        this.headers = new LinkedHashMap<String, String>(headers);
+        this.board = board;
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    public MoveHistory getMoveHistory() {
+        return board.getMoveHistory();
+    }
+
+    /**
+     * the game result, "1-0", "0-1", "1/2-1/2" or "*" if it is unknown.
+     */
+    public String getResult() {
+        String result = headers.get("Result");
+        return result == null ? "*" : result;
+    }
+
+    @Override
+    public String toString() {
+        return headers.get("White") + " - " + headers.get("Black") + " " + getResult();
+    }
+}
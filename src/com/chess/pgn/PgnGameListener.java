@@ -0,0 +1,6 @@
+package com.chess.pgn;
+
+public interface PgnGameListener {
+    
+    public void acceptGame(PgnGame game);
+}
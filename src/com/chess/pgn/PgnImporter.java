@@ -0,0 +1,267 @@
+package com.chess.pgn;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Imports a PGN database on several threads. One thread splits the input into games on game boundaries and hands
+ * them out in batches to a work-stealing ForkJoinPool. Every game is read by its own PgnReader onto its own Board, so
+ * no board or rules object is shared between threads.
+ *
+ * The listener is called from the worker threads, possibly several at once, and games do not arrive in file order.
+ * A game that cannot be read is counted as an error and the import carries on. Anything the listener throws stops
+ * the import and is thrown again from importGames().
+ */
+public class PgnImporter {
+
+    private static final int BATCH_SIZE = 64;
+
+    private final int parallelism;
+
+    public PgnImporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public PgnImporter(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, not " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public ImportStatistics importGames(Reader reader, final PgnGameListener listener) throws IOException {
+        final AtomicLong games = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicReference<Throwable> listenerFailure = new AtomicReference<Throwable>();
+        // limits the batches waiting in the pool, so a large file is never read much faster than it is imported
+        final Semaphore batchesInFlight = new Semaphore(parallelism * 4);
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            PgnSplitter splitter = new PgnSplitter(reader);
+            List<String> batch = new ArrayList<String>(BATCH_SIZE);
+            for (String game = splitter.nextGame(); game != null && listenerFailure.get() == null; game = splitter.nextGame()) {
+                batch.add(game);
+                if (batch.size() == BATCH_SIZE) {
+                    submit(pool, batch, listener, games, errors, listenerFailure, batchesInFlight);
+                    batch = new ArrayList<String>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                submit(pool, batch, listener, games, errors, listenerFailure, batchesInFlight);
+            }
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("import interrupted", ie);
+        }
+        finally {
+            pool.shutdown();
+            awaitTermination(pool);
+        }
+
+        Throwable failure = listenerFailure.get();
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new IllegalStateException("the listener failed", failure);
+        }
+
+        return new ImportStatistics(games.get(), errors.get(), System.nanoTime() - start);
+    }
+
+    private void submit(ForkJoinPool pool, final List<String> batch, final PgnGameListener listener, final AtomicLong games,
+                        final AtomicLong errors, final AtomicReference<Throwable> listenerFailure,
+                        final Semaphore batchesInFlight) throws InterruptedException {
+        batchesInFlight.acquire();
+        pool.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    for (String game : batch) {
+                        readGames(game, listener, games, errors);
+                    }
+                }
+                catch (Throwable t) {
+                    // the pool drops anything thrown out of a task, so even an Error is kept for importGames()
+                    listenerFailure.compareAndSet(null, t);
+                }
+                finally {
+                    batchesInFlight.release();
+                }
+            }
+        });
+    }
+
+    // the text normally holds one game, but reading on copes with boundaries the splitter did not see
+    private void readGames(String text, PgnGameListener listener, AtomicLong games, AtomicLong errors) {
+        PgnReader reader = new PgnReader(new StringReader(text));
+        for (;;) {
+            PgnGame game;
+            try {
+                game = reader.readGame();
+            }
+            catch (PGNFormatException pfe) {
+                errors.incrementAndGet();
+                continue;
+            }
+            catch (IOException ioe) {
+                throw new IllegalStateException("cannot happen reading a String", ioe);
+            }
+
+            if (game == null) {
+                return;
+            }
+            listener.acceptGame(game);
+            games.incrementAndGet();
+        }
+    }
+
+    private void awaitTermination(ForkJoinPool pool) throws IOException {
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                // keep waiting for the queued batches
+            }
+        }
+        catch (InterruptedException ie) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("import interrupted", ie);
+        }
+    }
+
+    /**
+     * usage: PgnImporter file [threads]. Reads every game in the file and prints the games per second.
+     */
+    public static void main(String[] args) throws IOException {
+        PgnImporter importer = args.length > 1 ? new PgnImporter(Integer.parseInt(args[1])) : new PgnImporter();
+        Reader reader = new InputStreamReader(new FileInputStream(args[0]), Charset.forName("ISO-8859-1"));
+        try {
+            System.out.println(importer.importGames(reader, new PgnGameListener() {
+
+                @Override
+                public void acceptGame(PgnGame game) {
+                }
+            }));
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * The outcome of an import: how many games were read, how many could not be, and how long it took.
+     */
+    public static class ImportStatistics {
+
+        private final long games;
+        private final long errors;
+        private final long elapsedNanos;
+
+        public ImportStatistics(long games, long errors, long elapsedNanos) {
+            this.games = games;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getGamesPerSecond() {
+            return games * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            return games + " games, " + errors + " errors in " + elapsedNanos / 1000000 + " ms ("
+                   + Math.round(getGamesPerSecond()) + " games/second)";
+        }
+    }
+
+    /**
+     * Splits PGN text into games without parsing it: a game ends where a tag line follows movetext. Braced comments
+     * are tracked so that a line starting with "[" inside a comment does not split a game.
+     */
+    static class PgnSplitter {
+
+        private final BufferedReader reader;
+        private String pendingLine;
+
+        PgnSplitter(Reader reader) {
+            this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        }
+
+        /**
+         * returns the text of the next game, or null at the end of the input.
+         */
+        String nextGame() throws IOException {
+            StringBuilder game = new StringBuilder();
+            boolean inMoveText = false;
+            boolean inComment = false;
+            String line = pendingLine != null ? pendingLine : reader.readLine();
+            pendingLine = null;
+            for (; line != null; line = reader.readLine()) {
+                String trimmed = line.trim();
+                if (!inComment && trimmed.startsWith("[")) {
+                    if (inMoveText) {
+                        pendingLine = line;
+                        break;
+                    }
+                }
+                else if (trimmed.length() > 0 && !inComment && !trimmed.startsWith("%")) {
+                    inMoveText = true;
+                }
+
+                inComment = endsInComment(line, inComment);
+                game.append(line).append('\n');
+            }
+
+            return game.toString().trim().length() == 0 ? null : game.toString();
+        }
+
+        // braced comments do not nest, and a ";" outside one comments out the rest of the line
+        private boolean endsInComment(String line, boolean inComment) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (!inComment && c == ';') {
+                    return false;
+                }
+                else if (c == '{') {
+                    inComment = true;
+                }
+                else if (c == '}') {
+                    inComment = false;
+                }
+            }
+
+            return inComment;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.chess.pgn;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.chess.board.Board;
+import com.chess.board.Fen;
+import com.chess.board.IllegalMoveException;
+import com.chess.board.MoveHistory;
+import com.chess.board.NAG;
+import com.chess.board.PositionTree;
+
+/**
+ * Reads games from PGN one at a time. Only the game being read is held in memory, so a file of any size can be read
+ * with readGame() in a loop or with readGames(). Moves are played on a Board, so each game comes back as a move
+ * history with its variations, comments and NAGs in place.
+ *
+ * A game with an illegal move or broken movetext is skipped up to its end and reported with a PGNFormatException,
+ * after which readGame() carries on with the next game.
+ */
+public class PgnReader implements Closeable {
+
+    private enum TokenType {
+        Tag, Comment, VariationStart, VariationEnd, Nag, Result, Move, EndOfFile
+    }
+
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private int pushedBackChar = NONE;
+    private int lastChar = '\n';
+    private int charBeforeLast = '\n';
+    private int line = 1;
+
+    // the current token. Tag tokens carry the tag name in text and the value in value.
+    private TokenType tokenType;
+    private String text;
+    private String value;
+    private boolean tokenPushedBack;
+
+    public PgnReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+    }
+
+    /**
+     * returns the next game, or null when there are no more games.
+     */
+    public PgnGame readGame() throws IOException {
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        int gameLine = line;
+        try {
+            nextToken();
+            gameLine = line;
+            while (tokenType == TokenType.Tag) {
+                headers.put(text, value);
+                nextToken();
+            }
+
+            if (tokenType == TokenType.EndOfFile && headers.isEmpty()) {
+                return null;
+            }
+
+            Board board = headers.containsKey("FEN") ? new Board(new Fen(headers.get("FEN"))) : new Board();
+            readMoveText(board, headers);
+            return new PgnGame(headers, board);
+        }
+        catch (IllegalMoveException ime) {
+            throw skipGame(gameLine, ime);
+        }
+        catch (RuntimeException re) {
+            throw skipGame(gameLine, re);
+        }
+    }
+
+    /**
+     * reads every remaining game, passing each to the listener as soon as it has been read, and returns the number
+     * of games read.
+     */
+    public int readGames(PgnGameListener listener) throws IOException {
+        int count = 0;
+        for (PgnGame game = readGame(); game != null; game = readGame()) {
+            listener.acceptGame(game);
+            count++;
+        }
+
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readMoveText(Board board, Map<String, String> headers) throws IOException, IllegalMoveException {
+        MoveHistory history = board.getMoveHistory();
+        Deque<PositionTree> variations = new ArrayDeque<PositionTree>();
+        for (;; nextToken()) {
+            switch (tokenType) {
+                case Move:
+                    playMove(board, text);
+                    break;
+                case Comment:
+                    history.getCurrentPositionTree().appendComment(text);
+                    break;
+                case Nag:
+                    history.getCurrentPositionTree().addNAG(NAG.getNAGForEncoding(Integer.parseInt(text)));
+                    break;
+                case VariationStart:
+                    // a variation is played instead of the move before it
+                    PositionTree current = history.getCurrentPositionTree();
+                    if (current.getParentTree() == null) {
+                        throw new PGNFormatException("variation before the first move on line " + line);
+                    }
+                    variations.push(current);
+                    history.setCurrentPositionTree(current.getParentTree());
+                    break;
+                case VariationEnd:
+                    if (variations.isEmpty()) {
+                        throw new PGNFormatException("unexpected ) on line " + line);
+                    }
+                    history.setCurrentPositionTree(variations.pop());
+                    break;
+                case Tag:
+                    // the next game has started without this one giving a result
+                    tokenPushedBack = true;
+                    return;
+                case Result:
+                case EndOfFile:
+                    if (!variations.isEmpty()) {
+                        throw new PGNFormatException("unterminated variation at line " + line);
+                    }
+                    if (tokenType == TokenType.Result && !headers.containsKey("Result")) {
+                        headers.put("Result", text);
+                    }
+                    return;
+            }
+        }
+    }
+
+    private void playMove(Board board, String san) throws IllegalMoveException {
+        // moveAlgebraic() turns a suffix annotation ("!", "?!"...) into a NAG, and as it finds the move among the
+        // legal moves it does not check it a second time
+        if (san.equals("--")) {
+            throw new PGNFormatException("null moves are not supported, line " + line);
+        }
+
+        board.moveAlgebraic(san);
+    }
+
+    // reads on to the end of the broken game so that the next readGame() starts on the following one
+    private PGNFormatException skipGame(int gameLine, Exception cause) throws IOException {
+        boolean inMoveText = tokenType != TokenType.Tag;
+        while (tokenType != TokenType.Result && tokenType != TokenType.EndOfFile) {
+            if (tokenType == TokenType.Tag && inMoveText) {
+                // the next game's tags
+                tokenPushedBack = true;
+                break;
+            }
+            inMoveText |= tokenType != TokenType.Tag;
+
+            try {
+                nextToken();
+            }
+            catch (PGNFormatException pfe) {
+                // more of the same broken game
+            }
+        }
+
+        return new PGNFormatException("could not read the game starting on line " + gameLine + ": " + cause.getMessage(),
+                                      cause);
+    }
+
+    private void nextToken() throws IOException {
+        if (tokenPushedBack) {
+            tokenPushedBack = false;
+            return;
+        }
+
+        int c = skipWhitespace();
+        value = null;
+        switch (c) {
+            case -1:
+                tokenType = TokenType.EndOfFile;
+                text = null;
+                break;
+            case '[':
+                readTag();
+                break;
+            case '{':
+                tokenType = TokenType.Comment;
+                text = readUntil('}').trim();
+                break;
+            case ';':
+                tokenType = TokenType.Comment;
+                text = readUntil('\n').trim();
+                break;
+            case '(':
+                tokenType = TokenType.VariationStart;
+                break;
+            case ')':
+                tokenType = TokenType.VariationEnd;
+                break;
+            case '$':
+                tokenType = TokenType.Nag;
+                text = readSymbol(read());
+                break;
+            case '*':
+                tokenType = TokenType.Result;
+                text = "*";
+                break;
+            default:
+                readSymbolToken(c);
+        }
+    }
+
+    private void readSymbolToken(int first) throws IOException {
+        String symbol = readSymbol(first);
+        if (symbol.length() == 0) {
+            read();
+            throw new PGNFormatException("unexpected character '" + (char) first + "' on line " + line);
+        }
+
+        if (symbol.equals("1-0") || symbol.equals("0-1") || symbol.equals("1/2-1/2")) {
+            tokenType = TokenType.Result;
+            text = symbol;
+        }
+        else if (isMoveNumber(symbol)) {
+            // "12." or "12..." before a move, we keep track of the move number on the board
+            nextToken();
+        }
+        else {
+            tokenType = TokenType.Move;
+            text = symbol;
+        }
+    }
+
+    private boolean isMoveNumber(String symbol) throws IOException {
+        for (int i = 0; i < symbol.length(); i++) {
+            if (!Character.isDigit(symbol.charAt(i))) {
+                return false;
+            }
+        }
+
+        int c = read();
+        while (c == '.') {
+            c = read();
+        }
+        unread(c);
+        return true;
+    }
+
+    private String readSymbol(int first) throws IOException {
+        StringBuilder result = new StringBuilder();
+        int c = first;
+        while (c != -1 && (Character.isLetterOrDigit(c) || "_+#=:-/!?".indexOf(c) >= 0)) {
+            result.append((char) c);
+            c = read();
+        }
+        unread(c);
+        return result.toString();
+    }
+
+    private void readTag() throws IOException {
+        tokenType = TokenType.Tag;
+        text = readSymbol(skipWhitespace());
+        if (skipWhitespace() != '"') {
+            throw new PGNFormatException("tag " + text + " has no quoted value on line " + line);
+        }
+
+        StringBuilder tagValue = new StringBuilder();
+        for (int c = read(); c != '"'; c = read()) {
+            if (c == -1 || c == '\n') {
+                throw new PGNFormatException("unterminated value for tag " + text + " on line " + line);
+            }
+            if (c == '\\') {
+                c = read();
+            }
+            tagValue.append((char) c);
+        }
+        value = tagValue.toString();
+
+        if (readUntil(']').trim().length() > 0) {
+            throw new PGNFormatException("unexpected text in tag " + text + " on line " + line);
+        }
+    }
+
+    private String readUntil(char terminator) throws IOException {
+        StringBuilder result = new StringBuilder();
+        for (int c = read(); c != terminator && c != -1; c = read()) {
+            result.append((char) c);
+        }
+
+        return result.toString();
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c = read();
+        while (c != -1) {
+            if (c == '%' && charBeforeLast == '\n') {
+                // escaped line, ignored
+                readUntil('\n');
+            }
+            else if (!Character.isWhitespace(c)) {
+                return c;
+            }
+            c = read();
+        }
+
+        return c;
+    }
+
+    private int read() throws IOException {
+        int c;
+        if (pushedBackChar != NONE) {
+            c = pushedBackChar;
+            pushedBackChar = NONE;
+        }
+        else {
+            c = reader.read();
+            if (c == '\n') {
+                line++;
+            }
+        }
+
+        charBeforeLast = lastChar;
+        lastChar = c;
+        return c;
+    }
+
+    private void unread(int c) {
+        pushedBackChar = c;
+        lastChar = charBeforeLast;
+    }
+}
@@ -0,0 +1,164 @@
+package com.chess.pgn;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.chess.board.Color;
+import com.chess.board.Fen;
+import com.chess.board.NAG;
+import com.chess.board.PositionTree;
+
+/**
+ * Writes games as PGN straight to a Writer as the position tree is walked, so even a very large repertoire tree is
+ * never built up as one string. Each move is followed by its NAGs ($n) and comment ({...}), then by the other moves
+ * that could have been played instead, each in parentheses, in the order of the tree. Movetext lines are wrapped at 80
+ * characters.
+ */
+public class PgnWriter implements Closeable, Flushable {
+
+    private static final int LINE_LENGTH = 80;
+
+    private final Writer writer;
+    private int column;
+    private boolean lastTokenOpenedVariation;
+
+    public PgnWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public void writeGame(PgnGame game) throws IOException {
+        writeGame(game.getHeaders(), game.getMoveHistory().getInitialPosition(), game.getResult());
+    }
+
+    /**
+     * writes the tags, then the moves below the start position, then the result ("*" when it is null). A FEN tag is
+     * added when the start position is not the normal one and the tags do not already have one.
+     */
+    public void writeGame(Map<String, String> headers, PositionTree start, String result) throws IOException {
+        if (result == null) {
+            result = "*";
+        }
+
+        for (Entry<String, String> header : headers.entrySet()) {
+            writeTag(header.getKey(), header.getKey().equals("Result") ? result : header.getValue());
+        }
+        if (!headers.containsKey("Result")) {
+            writeTag("Result", result);
+        }
+        Fen fen = start.getFen();
+        if (!headers.containsKey("FEN") && !fen.equals(Fen.getDefaultFen())) {
+            writeTag("SetUp", "1");
+            writeTag("FEN", fen.getFenString());
+        }
+        writer.write('\n');
+
+        column = 0;
+        writeComment(start.getComment());
+        writeLine(start, true);
+        writeToken(result);
+        writer.write("\n\n");
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void writeTag(String name, String value) throws IOException {
+        writer.write('[');
+        writer.write(name);
+        writer.write(" \"");
+        writer.write(value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\""));
+        writer.write("\"]\n");
+    }
+
+    // writes the moves following the position. Only variations recurse; the main line of each is a loop, so long
+    // games do not need a deep stack. numberBlackMove tells whether a black move right after the position needs its
+    // number.
+    private void writeLine(PositionTree position, boolean numberBlackMove) throws IOException {
+        while (!position.getVariations().isEmpty()) {
+            List<PositionTree> moves = position.getVariations();
+            PositionTree main = moves.get(0);
+            numberBlackMove = writeMove(main, numberBlackMove);
+
+            for (int i = 1; i < moves.size(); i++) {
+                writeToken("(");
+                writeLine(moves.get(i), writeMove(moves.get(i), true));
+                writeToken(")");
+                numberBlackMove = true;
+            }
+
+            position = main;
+        }
+    }
+
+    // writes the move with its number, NAGs and comment. Returns true when the next black move needs its number
+    // repeated because a comment came between it and the white move.
+    private boolean writeMove(PositionTree move, boolean numberBlackMove) throws IOException {
+        Fen before = move.getParentTree().getFen();
+        if (before.getTurn() == Color.White) {
+            writeToken(before.getFullMoveCount() + ".");
+        }
+        else if (numberBlackMove) {
+            writeToken(before.getFullMoveCount() + "...");
+        }
+        writeToken(getSan(move.getMoveDescription()));
+
+        for (NAG nag : move.getNAGs()) {
+            writeToken("$" + nag.nagNumber());
+        }
+
+        return writeComment(move.getComment());
+    }
+
+    private boolean writeComment(String comment) throws IOException {
+        if (comment == null) {
+            return false;
+        }
+
+        // PGN comments cannot contain a closing brace
+        writeToken("{" + comment.replace('}', ')') + "}");
+        return true;
+    }
+
+    /**
+     * returns the move description stored in a PositionTree ("12.Nf3", "dxe6 ep.") as PGN SAN ("Nf3", "dxe6").
+     */
+    static String getSan(String description) {
+        int start = 0;
+        while (start < description.length() && Character.isDigit(description.charAt(start))) {
+            start++;
+        }
+        while (start > 0 && start < description.length() && description.charAt(start) == '.') {
+            start++;
+        }
+
+        String san = description.substring(start).trim();
+        return san.endsWith(" ep.") ? san.substring(0, san.length() - 4) : san;
+    }
+
+    private void writeToken(String token) throws IOException {
+        if (column > 0 && column + 1 + token.length() > LINE_LENGTH) {
+            writer.write('\n');
+            column = 0;
+        }
+        else if (column > 0 && !token.equals(")") && !lastTokenOpenedVariation) {
+            writer.write(' ');
+            column++;
+        }
+
+        writer.write(token);
+        column += token.length();
+        lastTokenOpenedVariation = token.equals("(");
+    }
+}
@@ -86,6 +86,7 @@ import static com.chess.board.ECO.C20;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 //import com.chess.application.ChessSoundFactory;
 import com.chess.board.ECO;
@@ -155,6 +156,60 @@ public class BoardTest extends SerializationTest<Board> {
         assertEquals(board.getMoveHistory().getInitialPosition().getVariations().get(0), board.getPositionTree(fen));
     }
     
+    public void testGetPositionFindsPositionInVariation() throws Exception {
+        Board board = new Board().move(e2, e4).move(e7, e5);
+        board.undoMove();
+        board.move(c7, c5).move(g1, f3);
+        
+        Fen fen = new Board().move(e2, e4).move(c7, c5).getFen();
+        assertSame(board.getMoveHistory().getCurrentPositionTree().getParentTree(), board.getPositionTree(fen));
+    }
+    
+    public void testGetPositionWithNonStandardMoveCounters() throws Exception {
+        Fen start = new Fen("4k3/8/8/8/8/8/4P3/4K3 w - - 7 42");
+        Board board = new Board(start).move(e2, e4).move(e8, d7);
+        
+        assertSame(board.getMoveHistory().getCurrentPositionTree(), board.getPositionTree(board.getFen()));
+        assertSame(board.getMoveHistory().getInitialPosition(), board.getPositionTree(start));
+    }
+    
+    public void testGetPositionDoesNotFindDeletedMoves() throws Exception {
+        Board board = new Board().move(e2, e4).move(e7, e5);
+        Fen fen = board.getFen();
+        assertNotNull(board.getPositionTree(fen));
+        
+        board.getMoveHistory().deleteCurrentMove();
+        assertNull(board.getPositionTree(fen));
+        
+        board.move(e7, e5);
+        assertSame(board.getMoveHistory().getCurrentPositionTree(), board.getPositionTree(fen));
+        
+        board.undoMove();
+        board.getMoveHistory().clearVariations();
+        assertNull(board.getPositionTree(fen));
+    }
+    
+    public void testGetPositionDoesNotFindMovesBelowDeletedMove() throws Exception {
+        Board board = new Board().move(e2, e4).move(e7, e5).move(g1, f3);
+        Fen fen = board.getFen();
+        assertNotNull(board.getPositionTree(fen));
+        
+        board.undoMove();
+        board.getMoveHistory().deleteCurrentMove();
+        assertNull(board.getPositionTree(fen));
+    }
+    
+    public void testGetPositionSearchesTheNewTreeAfterSetFen() throws Exception {
+        Board board = new Board().move(e2, e4);
+        Fen e4Fen = board.getFen();
+        assertNotNull(board.getPositionTree(e4Fen));
+        
+        Fen d4Fen = new Board().move(d2, d4).getFen();
+        board.setFen(d4Fen);
+        assertNull(board.getPositionTree(e4Fen));
+        assertSame(board.getMoveHistory().getCurrentPositionTree(), board.getPositionTree(d4Fen));
+    }
+    
     public void testSetFenWipesHistoryAndFiresEvent() throws Exception {
         Board board = new Board();
         board.move(e2, e4);
@@ -285,6 +340,20 @@ public class BoardTest extends SerializationTest<Board> {
         assertFalse(fen.equals(board.getFen()));
     }
 
+    public void testMoveByIndexPlaysTheLegalMoveAtTheIndex() throws Exception {
+        Board board = new Board();
+        Move expected = MoveEncoding.decode(new ChessRules().getLegalMoveList(board.getFen()).get(3));
+        board.moveByIndex(3);
+        assertEquals(expected, board.getMoveHistory().getCurrentPositionTree().getLastMove());
+        
+        try {
+            board.moveByIndex(20);
+            fail();
+        }
+        catch (IllegalMoveException ime) {
+        }
+    }
+    
     public void testBoardRespectsEnPassantSquareInFen() throws Exception {
         Board board = new Board(new Fen("r3k2r/pppp1ppp/8/8/3Pp3/8/PPP1PPPP/R3K2R b Qk d3 0 15"));
         board.move(e4, d3);
@@ -1210,6 +1279,145 @@ public class BoardTest extends SerializationTest<Board> {
         assertEquals(null, board.getPieceAt(e2));
         assertEquals(WhitePawn, board.getPieceAt(e4));
     }
+    
+    public void testMakeMoveAndUnmakeMove() throws Exception {
+        Board board = new Board();
+        SimpleBoardListener listener = new SimpleBoardListener();
+        board.addBoardListener(listener);
+        
+        board.makeMove(new Move(e2, e4));
+        board.makeMove(new Move(e7, e5));
+        assertEquals(WhitePawn, board.getPieceAt(e4));
+        assertEquals(White, board.getTurn());
+        assertEquals(e6, board.getEnPassantSquare());
+        assertNull(board.getLastMove());
+        assertEquals(0, listener.getHistoryChangedCount());
+        
+        board.unmakeMove();
+        assertEquals(Black, board.getTurn());
+        assertEquals(e3, board.getEnPassantSquare());
+        board.unmakeMove();
+        assertEquals(Fen.getDefaultFen(), board.getFen());
+        
+        try {
+            board.unmakeMove();
+            fail();
+        }
+        catch (IllegalStateException ise) {
+        }
+    }
+    
+    public void testCannotMoveWhileSearchMovesArePending() throws Exception {
+        Board board = new Board();
+        board.makeMove(new Move(e2, e4));
+        try {
+            board.move(e7, e5);
+            fail();
+        }
+        catch (IllegalStateException ise) {
+        }
+        
+        board.unmakeMove();
+        board.move(e2, e4);
+        assertEquals(new Move(e2, e4), board.getLastMove());
+    }
+    
+    public void testMoveAlgebraicDoesNotCheckParsedMoveAgain() throws Exception {
+        AssertCountingRules rules = new AssertCountingRules();
+        Board board = new Board().setRules(rules);
+        board.moveAlgebraic("e4");
+        board.moveAlgebraic("e5");
+        assertEquals(0, rules.asserts);
+        assertEquals(new Move(e7, e5), board.getLastMove());
+        
+        board.move(g1, f3);
+        assertEquals(1, rules.asserts);
+    }
+    
+    public void testCannotChangeHistoryWhileSearchMovesArePending() throws Exception {
+        Board board = new Board();
+        board.move(e2, e4);
+        board.makeMove(new Move(e7, e5));
+        try {
+            board.undoMove();
+            fail();
+        }
+        catch (IllegalStateException ise) {
+        }
+        try {
+            board.redoMove();
+            fail();
+        }
+        catch (IllegalStateException ise) {
+        }
+        try {
+            board.setFen(Fen.getDefaultFen());
+            fail();
+        }
+        catch (IllegalStateException ise) {
+        }
+        
+        board.unmakeMove();
+        assertEquals(new Move(e2, e4), board.getLastMove());
+        board.undoMove();
+        assertEquals(Fen.getDefaultFen(), board.getFen());
+    }
+    
+    public void testCannotResetWhileSearchMovesArePending() throws Exception {
+        Board board = new Board().move(e2, e4);
+        board.makeMove(new Move(e7, e5));
+        try {
+            board.reset();
+            fail();
+        }
+        catch (IllegalStateException ise) {
+        }
+        
+        board.unmakeMove();
+        assertEquals(new Move(e2, e4), board.getLastMove());
+    }
+    
+    public void testCannotClearAllWhileSearchMovesArePending() throws Exception {
+        Board board = new Board().move(e2, e4);
+        board.makeMove(new Move(e7, e5));
+        try {
+            board.clearAll();
+            fail();
+        }
+        catch (IllegalStateException ise) {
+        }
+        
+        board.unmakeMove();
+        assertEquals(new Move(e2, e4), board.getLastMove());
+    }
+    
+    public void testCannotGoToEndOfMainLineWhileSearchMovesArePending() throws Exception {
+        Board board = new Board().move(e2, e4).move(e7, e5);
+        board.undoMove();
+        board.makeMove(new Move(d7, d5));
+        try {
+            board.toEndOfMainLine();
+            fail();
+        }
+        catch (IllegalStateException ise) {
+        }
+        
+        board.unmakeMove();
+        assertEquals(new Move(e2, e4), board.getLastMove());
+    }
+}
+
+class AssertCountingRules extends ChessRules {
+    
+    private static final long serialVersionUID = 1L;
+    
+    int asserts;
+    
+    @Override
+    public void assertLegal(Move move, Board board) throws IllegalMoveException {
+        asserts++;
+        super.assertLegal(move, board);
+    }
 }
 
 class NoDrawRules extends ChessRules {
@@ -1250,6 +1458,11 @@ class AllDrawRules implements Rules {
         return true;
     }
     
+    @Override
+    public MoveLegality getLegality(Move move, Board board) {
+        return MoveLegality.Legal;
+    }
+    
     @Override
     public Position move(Move move, Position position) {
         return position;
@@ -1279,6 +1492,16 @@ class AllDrawRules implements Rules {
     public Move getAnyLegalMove(Board board) {
         return null;
     }
+    
+    @Override
+    public List<Move> getLegalMoves(Board board) {
+        return Collections.emptyList();
+    }
+    
+    @Override
+    public MoveList getLegalMoveList(Board board) {
+        return new MoveList();
+    }
 }
 
 class SimpleBoardListener implements BoardListener {
@@ -1392,6 +1615,11 @@ class AllIllegalRules implements Rules {
         return false;
     }
     
+    @Override
+    public MoveLegality getLegality(Move move, Board board) {
+        return MoveLegality.IllegalPieceMovement;
+    }
+    
     @Override
     public boolean canAnyLegalMoveStartOn(Square square, Board board) {
         return false;
@@ -1436,6 +1664,16 @@ class AllIllegalRules implements Rules {
     public Move getAnyLegalMove(Board board) {
         return null;
     }
+    
+    @Override
+    public List<Move> getLegalMoves(Board board) {
+        return Collections.emptyList();
+    }
+    
+    @Override
+    public MoveList getLegalMoveList(Board board) {
+        return new MoveList();
+    }
 }
 
 class ECOBoardListener implements BoardListener {
@@ -280,6 +280,23 @@ public class ChessRulesTest extends SerializationTest<ChessRules> {
         assertEquals(DrawType.ThreeMoveRepetition, listener.getDrawType());
     }
     
+    public void testDrawByRepetitionAfterPawnMove() throws Exception {
+        Board board = new Board(new Fen("4k3/8/8/8/8/8/4P3/4K3 w - - 37 60"));
+        GameStateListener listener = new GameStateListener();
+        board.addBoardListener(listener);
+        board.move(e2, e4);
+        board.move(e8, d8); // position #1
+        for (int i = 0; i < 2; i++) {
+            board.move(e1, d1);
+            board.move(d8, e8);
+            assertNull(listener.getDrawType());
+            board.move(d1, e1);
+            board.move(e8, d8); // position #2, then #3
+        }
+        
+        assertEquals(DrawType.ThreeMoveRepetition, listener.getDrawType());
+    }
+    
     public void test50MoveDrawStartingWithBlackMove() throws Exception {
         Board board = new Board();
         board.setRules(new NoDrawRules());
@@ -1060,4 +1077,145 @@ public class ChessRulesTest extends SerializationTest<ChessRules> {
         assertNull(moved.get(f5));
         assertEquals(WhitePawn, moved.get(f6));
     }
+    
+    public void testGetLegalMovesInStartPosition() throws Exception {
+        List<Move> moves = rules.getLegalMoves(new Board());
+        assertEquals(20, moves.size());
+        assertTrue(moves.contains(new Move(g1, f3)));
+        assertTrue(moves.contains(new Move(e2, e4)));
+    }
+    
+    public void testGetLegalMovesListsEveryPromotionPiece() throws Exception {
+        List<Move> moves = rules.getLegalMoves(new Board(new Fen("7k/P7/8/8/8/8/8/7K w - - 0 25")));
+        assertTrue(moves.contains(new Move(a7, a8, Queen)));
+        assertTrue(moves.contains(new Move(a7, a8, Promotion.Rook)));
+        assertTrue(moves.contains(new Move(a7, a8, Promotion.Bishop)));
+        assertTrue(moves.contains(new Move(a7, a8, Promotion.Knight)));
+        assertEquals(7, moves.size());
+    }
+    
+    public void testGetLegalMovesKeepsPinnedPieceOnThePinningLine() throws Exception {
+        Board board = new Board(new Fen("4k3/8/8/1b6/8/3N4/8/5K2 w - - 0 1"));
+        assertEquals(0, rules.getLegalMovesStartingOn(d3, board).size());
+        
+        board = new Board(new Fen("4k3/8/8/1b6/8/3B4/8/5K2 b - - 0 1"));
+        assertTrue(rules.getLegalMovesStartingOn(b5, board).contains(new Move(b5, d3)));
+        
+        board = new Board(new Fen("4k3/8/8/b7/8/2B5/8/4K3 w - - 0 1"));
+        Collection<Move> moves = rules.getLegalMovesStartingOn(c3, board);
+        assertEquals(3, moves.size());
+        assertTrue(moves.contains(new Move(c3, d2)));
+        assertTrue(moves.contains(new Move(c3, b4)));
+        assertTrue(moves.contains(new Move(c3, a5)));
+    }
+    
+    public void testGetLegalMovesOnlyBlocksOrCapturesWhenInCheck() throws Exception {
+        Board board = new Board(new Fen("4k3/8/8/8/8/8/1R6/r3K3 w - - 0 1"));
+        List<Move> moves = rules.getLegalMoves(board);
+        assertTrue(moves.contains(new Move(b2, b1)));
+        assertTrue(moves.contains(new Move(e1, e2)));
+        assertFalse(moves.contains(new Move(b2, b3)));
+        assertFalse(moves.contains(new Move(e1, d1)));
+        assertFalse(moves.contains(new Move(e1, f1)));
+    }
+    
+    public void testEnPassantThatExposesKingAlongRankIsIllegal() throws Exception {
+        Board board = new Board(new Fen("8/8/8/K2pP2r/8/8/8/7k w - d6 0 1"));
+        assertFalse(rules.getLegalMoves(board).contains(new Move(e5, d6)));
+        assertFalse(rules.isLegal(new Move(e5, d6), board));
+        
+        board = new Board(new Fen("8/8/8/K2pP3/8/8/8/7k w - d6 0 1"));
+        assertTrue(rules.getLegalMoves(board).contains(new Move(e5, d6)));
+    }
+    
+    public void testGetLegalityKeepsPinnedPieceOnThePinningLine() throws Exception {
+        Board board = new Board(new Fen("4k3/8/8/1b6/8/3N4/8/5K2 w - - 0 1"));
+        assertEquals(MoveLegality.KingInCheck, rules.getLegality(new Move(d3, e5), board));
+        
+        board = new Board(new Fen("4k3/8/8/b7/8/2B5/8/4K3 w - - 0 1"));
+        assertEquals(MoveLegality.Legal, rules.getLegality(new Move(c3, b4), board));
+        assertEquals(MoveLegality.Legal, rules.getLegality(new Move(c3, a5), board));
+        assertEquals(MoveLegality.KingInCheck, rules.getLegality(new Move(c3, d4), board));
+    }
+    
+    public void testGetLegalityOnlyBlocksOrCapturesWhenInCheck() throws Exception {
+        Board board = new Board(new Fen("4k3/8/8/8/8/8/1R6/r3K3 w - - 0 1"));
+        assertEquals(MoveLegality.Legal, rules.getLegality(new Move(b2, b1), board));
+        assertEquals(MoveLegality.Legal, rules.getLegality(new Move(e1, e2), board));
+        assertEquals(MoveLegality.KingInCheck, rules.getLegality(new Move(b2, b3), board));
+        assertEquals(MoveLegality.KingInCheck, rules.getLegality(new Move(e1, d1), board));
+        // the king can not step away along the line of the rook checking him
+        assertEquals(MoveLegality.KingInCheck, rules.getLegality(new Move(e1, f1), board));
+    }
+    
+    public void testGetLegalityOnlyAllowsKingMovesInDoubleCheck() throws Exception {
+        Board board = new Board(new Fen("4k3/8/8/8/8/1R1n4/8/r3K3 w - - 0 1"));
+        assertEquals(MoveLegality.KingInCheck, rules.getLegality(new Move(b3, d3), board));
+        assertEquals(MoveLegality.KingInCheck, rules.getLegality(new Move(b3, b1), board));
+        assertEquals(MoveLegality.Legal, rules.getLegality(new Move(e1, e2), board));
+    }
+    
+    public void testGetLegalMoveListReturnsACopy() throws Exception {
+        Board board = new Board();
+        MoveList moves = rules.getLegalMoveList(board);
+        assertEquals(20, moves.size());
+        moves.clear();
+        
+        assertEquals(20, rules.getLegalMoveList(board).size());
+        assertEquals(2, rules.getLegalMovesStartingOn(e2, board).size());
+    }
+    
+    public void testCachedMovesAreNotSharedWithOtherRules() throws Exception {
+        Board board = new Board();
+        assertNotNull(rules.getAnyLegalMove(board));
+        
+        ChessRules noMoves = new ChessRules() {
+            
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            public MoveList getLegalMoveList(Fen fen) {
+                return new MoveList();
+            }
+        };
+        assertNull(noMoves.getAnyLegalMove(board));
+        assertNotNull(rules.getAnyLegalMove(board));
+    }
+    
+    public void testCastleQueensideIllegalWithPieceOnKnightSquare() throws Exception {
+        Board board = new Board(new Fen("4k3/8/8/8/8/8/8/RN2K3 w Q - 0 1"));
+        assertFalse(rules.isLegal(new Move(e1, c1), board));
+        assertFalse(rules.getLegalMoves(board).contains(new Move(e1, c1)));
+    }
+    
+    public void testKingCannotCastleOffTheBackRank() throws Exception {
+        Board board = new Board(new Fen("4k3/8/8/8/8/8/8/4K2R w K - 0 1"));
+        assertFalse(rules.isLegal(new Move(e1, g2), board));
+        assertTrue(rules.isLegal(new Move(e1, g1), board));
+        assertTrue(rules.getLegalMoves(board).contains(new Move(e1, g1)));
+    }
+    
+    public void testGetLegalityReportsReason() throws Exception {
+        Board board = new Board();
+        assertEquals(MoveLegality.Legal, rules.getLegality(new Move(e2, e4), board));
+        assertEquals(MoveLegality.NoPieceOnStartSquare, rules.getLegality(new Move(e4, e5), board));
+        assertEquals(MoveLegality.NotPlayersTurn, rules.getLegality(new Move(e7, e5), board));
+        assertEquals(MoveLegality.CapturesOwnPiece, rules.getLegality(new Move(d1, d2), board));
+        assertEquals(MoveLegality.IllegalPieceMovement, rules.getLegality(new Move(g1, g3), board));
+        assertEquals(MoveLegality.JumpsOverPiece, rules.getLegality(new Move(a1, a3), board));
+        
+        board = new Board(new Fen("4k3/8/8/8/8/8/4r3/R3K2R w KQ - 0 1"));
+        assertEquals(MoveLegality.CastlingOutOfCheck, rules.getLegality(new Move(e1, g1), board));
+        assertEquals(MoveLegality.KingInCheck, rules.getLegality(new Move(a1, a2), board));
+    }
+    
+    public void testAssertLegalDescribesReason() throws Exception {
+        try {
+            rules.assertLegal(new Move(a1, a3), new Board());
+            fail("the rook cannot jump over the pawn");
+        }
+        catch (IllegalMoveException ime) {
+            assertEquals("a1-a3: " + MoveLegality.JumpsOverPiece.getDescription(), ime.getMessage());
+        }
+    }
 }
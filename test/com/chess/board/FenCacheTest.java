@@ -0,0 +1,59 @@
+package com.chess.board;
+
+import junit.framework.TestCase;
+
+public class FenCacheTest extends TestCase {
+    
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final String AFTER_E4 = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1";
+    private static final String AFTER_D4 = "rnbqkbnr/pppppppp/8/8/3P4/8/PPP1PPPP/RNBQKBNR b KQkq d3 0 1";
+    
+    public void testGetFenReturnsSharedFen() throws Exception {
+        FenCache cache = new FenCache(10);
+        Fen fen = cache.getFen(START);
+        assertEquals(Fen.getDefaultFen(), fen);
+        assertSame(fen, cache.getFen(START));
+        
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+    
+    public void testLeastRecentlyUsedIsDropped() throws Exception {
+        FenCache cache = new FenCache(2);
+        Fen start = cache.getFen(START);
+        cache.getFen(AFTER_E4);
+        cache.getFen(START);
+        cache.getFen(AFTER_D4);
+        
+        assertEquals(2, cache.size());
+        assertSame(start, cache.getFen(START));
+        assertEquals(2, cache.getHits());
+        cache.getFen(AFTER_E4);
+        assertEquals(4, cache.getMisses());
+    }
+    
+    public void testBadFenIsNotCached() throws Exception {
+        FenCache cache = new FenCache(2);
+        try {
+            cache.getFen("not a fen");
+            fail("bad FEN should throw exception");
+        }
+        catch (FENFormatException ffe) {
+        }
+        
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getMisses());
+    }
+    
+    public void testClear() throws Exception {
+        FenCache cache = new FenCache(2);
+        cache.getFen(START);
+        cache.getFen(START);
+        cache.clear();
+        
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+}
@@ -16,11 +16,13 @@ import static com.chess.board.Square.a1;
 import static com.chess.board.Square.a2;
 import static com.chess.board.Square.a6;
 import static com.chess.board.Square.a8;
+import static com.chess.board.Square.b1;
 import static com.chess.board.Square.b2;
 import static com.chess.board.Square.b4;
 import static com.chess.board.Square.b5;
 import static com.chess.board.Square.b7;
 import static com.chess.board.Square.c2;
+import static com.chess.board.Square.c3;
 import static com.chess.board.Square.c5;
 import static com.chess.board.Square.d4;
 import static com.chess.board.Square.e1;
@@ -450,4 +452,33 @@ public class FenTest extends SerializationTest<Fen> {
         fen = new Fen("r3k2r/8/8/8/8/8/8/R3K2R w Q - 13 7");
         assertEquals(7, fen.getFullMoveCount());
     }
+    
+    public void testZobristKeyIsTheSameAfterTransposedMoveOrders() throws Exception {
+        Fen first = new Board().move(g1, f3).move(g8, f6).move(b1, c3).getFen();
+        Fen second = new Board().move(b1, c3).move(g8, f6).move(g1, f3).getFen();
+        
+        assertEquals(first.getZobristKey(), second.getZobristKey());
+        assertEquals(new Fen(first.toString()).getZobristKey(), first.getZobristKey());
+        assertFalse(first.getZobristKey() == Fen.getDefaultFen().getZobristKey());
+    }
+    
+    public void testZobristKeyIncludesTurnCastlingAndEnPassant() throws Exception {
+        Fen fen = new Fen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 15");
+        assertEquals(fen.getZobristKey(), new Fen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 12 40").getZobristKey());
+        assertFalse(fen.getZobristKey() == new Fen("r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 15").getZobristKey());
+        assertFalse(fen.getZobristKey() == new Fen("r3k2r/8/8/8/8/8/8/R3K2R w KQk - 0 15").getZobristKey());
+        
+        Fen enPassant = new Fen("4k3/8/8/8/4P3/8/8/4K3 b - e3 0 1");
+        assertFalse(enPassant.getZobristKey() == new Fen("4k3/8/8/8/4P3/8/8/4K3 b - - 0 1").getZobristKey());
+    }
+    
+    public void testAfterMoveRemovesCastlingWhenRookIsCaptured() throws Exception {
+        Fen fen = new Fen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 3 15");
+        Move move = new Move(a1, a8);
+        Fen result = fen.afterMove(move, new ChessRules().move(move, fen.getPosition()));
+        
+        assertEquals("R3k2r/8/8/8/8/8/8/4K2R b Kk - 0 15", result.getFenString());
+        assertEquals(new Fen(result.getFenString()), result);
+        assertEquals("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 3 15", fen.getFenString());
+    }
 }
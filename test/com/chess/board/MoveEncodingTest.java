@@ -0,0 +1,65 @@
+package com.chess.board;
+
+import static com.chess.board.Square.a1;
+import static com.chess.board.Square.a7;
+import static com.chess.board.Square.a8;
+import static com.chess.board.Square.b7;
+import static com.chess.board.Square.b8;
+import static com.chess.board.Square.d5;
+import static com.chess.board.Square.d6;
+import static com.chess.board.Square.e1;
+import static com.chess.board.Square.e2;
+import static com.chess.board.Square.e4;
+import static com.chess.board.Square.e5;
+import static com.chess.board.Square.g1;
+import static com.chess.board.Square.h8;
+
+import junit.framework.TestCase;
+
+public class MoveEncodingTest extends TestCase {
+    
+    public void testRoundTrip() throws Exception {
+        for (Move move : new Move[] { new Move(e2, e4), new Move(a1, h8), new Move(h8, a1), new Move(a7, b8, Promotion.Knight),
+                                     new Move(a7, a8, Promotion.Queen), new Move(a7, a8, Promotion.Rook) }) {
+            short encoded = MoveEncoding.encode(move);
+            assertEquals(move, MoveEncoding.decode(encoded));
+            assertEquals(move.getStartSquare(), MoveEncoding.getStartSquare(encoded));
+            assertEquals(move.getEndSquare(), MoveEncoding.getEndSquare(encoded));
+            assertEquals(move.getPromotionPiece(), MoveEncoding.getPromotion(encoded));
+        }
+    }
+    
+    public void testNone() throws Exception {
+        assertEquals(MoveEncoding.NONE, MoveEncoding.encode(null));
+        assertNull(MoveEncoding.decode(MoveEncoding.NONE));
+    }
+    
+    public void testKindComesFromPosition() throws Exception {
+        Position position = new Fen("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1").getPosition();
+        
+        assertEquals(MoveEncoding.NORMAL, MoveEncoding.getKind(MoveEncoding.encode(new Move(e1, Square.f1), position)));
+        assertTrue(MoveEncoding.isCastling(MoveEncoding.encode(new Move(e1, g1), position)));
+        assertTrue(MoveEncoding.isEnPassant(MoveEncoding.encode(new Move(e5, d6), position)));
+        assertFalse(MoveEncoding.isEnPassant(MoveEncoding.encode(new Move(e5, Square.e6), position)));
+        assertTrue(MoveEncoding.isPromotion(MoveEncoding.encode(new Move(b7, b8, Promotion.Bishop), position)));
+        assertEquals(MoveEncoding.NORMAL, MoveEncoding.getKind(MoveEncoding.encode(new Move(d5, Square.d4), position)));
+    }
+    
+    public void testLegalMoveListKinds() throws Exception {
+        MoveList moves = new ChessRules().getLegalMoveList(new Fen("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1"));
+        int castles = 0;
+        int enPassant = 0;
+        int promotions = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            short move = moves.get(i);
+            castles += MoveEncoding.isCastling(move) ? 1 : 0;
+            enPassant += MoveEncoding.isEnPassant(move) ? 1 : 0;
+            promotions += MoveEncoding.isPromotion(move) ? 1 : 0;
+        }
+        
+        assertEquals(2, castles);
+        assertEquals(1, enPassant);
+        assertEquals(8, promotions);
+        assertEquals(moves.toMoves(), new ChessRules().getLegalMoves(new Fen("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1")));
+    }
+}
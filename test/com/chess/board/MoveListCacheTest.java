@@ -0,0 +1,39 @@
+package com.chess.board;
+
+import junit.framework.TestCase;
+
+public class MoveListCacheTest extends TestCase {
+    
+    private final ChessRules rules = new ChessRules();
+    
+    public void testGetReturnsCachedMoves() throws Exception {
+        MoveListCache cache = new MoveListCache(4);
+        Fen fen = Fen.getDefaultFen();
+        assertNull(cache.get(fen));
+        
+        MoveList moves = rules.getLegalMoveList(fen);
+        cache.put(fen, moves);
+        assertSame(moves, cache.get(fen));
+        
+        // the move counts do not change the moves
+        assertSame(moves, cache.get(new Fen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 5 20")));
+        assertNull(cache.get(new Fen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w Kkq - 0 1")));
+    }
+    
+    public void testLeastRecentlyUsedIsDropped() throws Exception {
+        MoveListCache cache = new MoveListCache(2);
+        Fen first = Fen.getDefaultFen();
+        Fen second = new Fen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+        Fen third = new Fen("rnbqkbnr/pppppppp/8/8/3P4/8/PPP1PPPP/RNBQKBNR b KQkq d3 0 1");
+        
+        cache.put(first, rules.getLegalMoveList(first));
+        cache.put(second, rules.getLegalMoveList(second));
+        assertNotNull(cache.get(first));
+        cache.put(third, rules.getLegalMoveList(third));
+        
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+    }
+}
@@ -0,0 +1,58 @@
+package com.chess.board;
+
+import static com.chess.board.Square.d2;
+import static com.chess.board.Square.d4;
+import static com.chess.board.Square.e2;
+import static com.chess.board.Square.e4;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class MoveListTest extends TestCase {
+    
+    public void testAddAndGet() throws Exception {
+        MoveList list = new MoveList(1);
+        assertTrue(list.isEmpty());
+        
+        short e4Move = MoveEncoding.encode(new Move(e2, e4));
+        short d4Move = MoveEncoding.encode(new Move(d2, d4));
+        list.add(e4Move);
+        list.add(d4Move);
+        list.add(e4Move);
+        
+        assertEquals(3, list.size());
+        assertEquals(d4Move, list.get(1));
+        assertEquals(0, list.indexOf(e4Move));
+        assertTrue(list.contains(d4Move));
+        assertEquals(Arrays.asList(new Move(e2, e4), new Move(d2, d4), new Move(e2, e4)), list.toMoves());
+        
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertFalse(list.contains(e4Move));
+    }
+    
+    public void testGetOutOfRange() throws Exception {
+        MoveList list = new MoveList();
+        list.add(MoveEncoding.encode(new Move(e2, e4)));
+        try {
+            list.get(1);
+            fail();
+        }
+        catch (IndexOutOfBoundsException ioobe) {
+        }
+    }
+    
+    public void testCopyIsIndependent() throws Exception {
+        MoveList list = new MoveList();
+        list.add(MoveEncoding.encode(new Move(e2, e4)));
+        
+        MoveList copy = new MoveList(list);
+        copy.add(MoveEncoding.encode(new Move(d2, d4)));
+        
+        assertEquals(1, list.size());
+        assertEquals(2, copy.size());
+        assertEquals(list.get(0), copy.get(0));
+        assertEquals(0, new MoveList(new MoveList()).size());
+    }
+}
@@ -0,0 +1,79 @@
+package com.chess.board;
+
+import static com.chess.board.Square.e2;
+import static com.chess.board.Square.e4;
+import static com.chess.board.Square.f3;
+import static com.chess.board.Square.g1;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * node counts for the reference positions are from the Chess Programming Wiki's "Perft Results" page.
+ */
+public class PerftTest extends TestCase {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    private static final String ENDGAME = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+    private static final String PROMOTIONS = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+    private static final String MIRRORED_PROMOTIONS = "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1";
+    private static final String DISCOVERED_CHECKS = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+    private static final String MIDDLEGAME = "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10";
+
+    private Perft perft;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        perft = new Perft();
+    }
+
+    public void testStartPosition() throws Exception {
+        assertPerft(Fen.getDefaultFen(), 20, 400, 8902, 197281);
+    }
+
+    public void testKiwipete() throws Exception {
+        assertPerft(new Fen(KIWIPETE), 48, 2039, 97862);
+    }
+
+    public void testEnPassantEndgame() throws Exception {
+        assertPerft(new Fen(ENDGAME), 14, 191, 2812, 43238);
+    }
+
+    public void testPromotions() throws Exception {
+        assertPerft(new Fen(PROMOTIONS), 6, 264, 9467);
+        assertPerft(new Fen(MIRRORED_PROMOTIONS), 6, 264, 9467);
+    }
+
+    public void testDiscoveredChecks() throws Exception {
+        assertPerft(new Fen(DISCOVERED_CHECKS), 44, 1486, 62379);
+    }
+
+    public void testMiddlegame() throws Exception {
+        assertPerft(new Fen(MIDDLEGAME), 46, 2079, 89890);
+    }
+
+    public void testDepthZeroIsOneNode() throws Exception {
+        assertEquals(1, perft.perft(new Board(), 0));
+    }
+
+    public void testDivideSumsToPerft() throws Exception {
+        Map<Move, Long> divide = perft.divide(Fen.getDefaultFen(), 3);
+        assertEquals(20, divide.size());
+        assertEquals(Long.valueOf(600), divide.get(new Move(e2, e4)));
+        assertEquals(Long.valueOf(440), divide.get(new Move(g1, f3)));
+
+        long total = 0;
+        for (long nodes : divide.values()) {
+            total += nodes;
+        }
+        assertEquals(8902, total);
+    }
+
+    private void assertPerft(Fen fen, long... nodesByDepth) {
+        for (int depth = 1; depth <= nodesByDepth.length; depth++) {
+            assertEquals(fen + " depth " + depth, nodesByDepth[depth - 1], perft.perft(fen, depth));
+        }
+    }
+}
@@ -5,6 +5,7 @@ import static com.chess.board.Color.White;
 import static com.chess.board.Piece.BlackBishop;
 import static com.chess.board.Piece.BlackKing;
 import static com.chess.board.Piece.BlackKnight;
+import static com.chess.board.Piece.BlackPawn;
 import static com.chess.board.Piece.BlackQueen;
 import static com.chess.board.Piece.BlackRook;
 import static com.chess.board.Piece.WhiteBishop;
@@ -16,9 +17,16 @@ import static com.chess.board.Piece.WhiteRook;
 import static com.chess.board.Square.a1;
 import static com.chess.board.Square.a2;
 import static com.chess.board.Square.a5;
+import static com.chess.board.Square.a7;
+import static com.chess.board.Square.a8;
 import static com.chess.board.Square.b3;
 import static com.chess.board.Square.b7;
+import static com.chess.board.Square.c3;
 import static com.chess.board.Square.c4;
+import static com.chess.board.Square.c8;
+import static com.chess.board.Square.d1;
+import static com.chess.board.Square.d2;
+import static com.chess.board.Square.d3;
 import static com.chess.board.Square.d4;
 import static com.chess.board.Square.d5;
 import static com.chess.board.Square.d7;
@@ -26,11 +34,14 @@ import static com.chess.board.Square.e1;
 import static com.chess.board.Square.e2;
 import static com.chess.board.Square.e3;
 import static com.chess.board.Square.e4;
+import static com.chess.board.Square.e5;
+import static com.chess.board.Square.e6;
 import static com.chess.board.Square.e7;
 import static com.chess.board.Square.e8;
 import static com.chess.board.Square.f1;
 import static com.chess.board.Square.f2;
 import static com.chess.board.Square.f3;
+import static com.chess.board.Square.f5;
 import static com.chess.board.Square.g2;
 import static com.chess.board.Square.g7;
 import static com.chess.board.Square.h1;
@@ -40,8 +51,6 @@ import static com.chess.board.Square.h8;
 
 import java.util.Collection;
 
-import com.chess.util.SerializationTest;
-
 public class PositionTest extends SerializationTest<Position> {
     
     public void testSerializable() throws Exception {
@@ -157,6 +166,95 @@ public class PositionTest extends SerializationTest<Position> {
         assertTrue(position.isInCheck(Black));
     }
     
+    public void testIsInCheckFromPawn() throws Exception {
+        Position position = new Position();
+        position = position.put(e4, WhiteKing);
+        position = position.put(d5, BlackPawn);
+        position = position.put(e6, BlackKing);
+        position = position.put(d3, WhitePawn);
+        
+        assertTrue(position.isInCheck(White));
+        assertFalse(position.isInCheck(Black));
+        
+        // pawns only capture forward
+        position = position.put(d5, null).put(d3, BlackPawn);
+        assertFalse(position.isInCheck(White));
+    }
+    
+    public void testIsNotInCheckThroughBlockingPiece() throws Exception {
+        Position position = new Position();
+        position = position.put(a1, WhiteKing);
+        position = position.put(h8, BlackQueen);
+        position = position.put(d4, WhitePawn);
+        position = position.put(a8, BlackRook);
+        position = position.put(a5, BlackKnight);
+        position = position.put(c8, BlackKing);
+        
+        assertFalse(position.isInCheck(White));
+        
+        position = position.put(d4, null);
+        assertTrue(position.isInCheck(White));
+        
+        position = position.put(d4, WhitePawn).put(a5, null);
+        assertTrue(position.isInCheck(White));
+    }
+    
+    public void testIsSquareAttacked() throws Exception {
+        Position position = new Position();
+        position = position.put(e1, WhiteKing);
+        position = position.put(a1, WhiteRook);
+        position = position.put(e4, WhitePawn);
+        position = position.put(e8, BlackKing);
+        position = position.put(b7, BlackBishop);
+        
+        assertTrue(position.isSquareAttacked(d1, White));
+        assertTrue(position.isSquareAttacked(f5, White));
+        assertFalse(position.isSquareAttacked(e5, White));
+        assertTrue(position.isSquareAttacked(d5, Black));
+        // the pawn on e4 blocks the bishop
+        assertFalse(position.isSquareAttacked(f3, Black));
+        
+        // a changed position gets its own attacks
+        Position moved = position.put(e4, null);
+        assertTrue(moved.isSquareAttacked(f3, Black));
+        assertFalse(moved.isSquareAttacked(f5, White));
+        assertFalse(position.isSquareAttacked(f3, Black));
+    }
+    
+    public void testAttackMapsAreWorkedOutPerColor() throws Exception {
+        Position position = new Position();
+        position = position.put(e1, WhiteKing);
+        position = position.put(e4, WhitePawn);
+        position = position.put(e8, BlackKing);
+        position = position.put(b7, BlackBishop);
+        
+        // a copy shares the white map worked out so far and fills in the black one on its own
+        assertTrue(position.isSquareAttacked(f5, White));
+        Position copy = position.clone();
+        assertTrue(copy.isSquareAttacked(d5, Black));
+        assertFalse(copy.isSquareAttacked(f3, Black));
+        assertTrue(copy.isSquareAttacked(d5, White));
+        assertTrue(position.isSquareAttacked(d5, Black));
+        assertFalse(position.isSquareAttacked(e5, White));
+    }
+    
+    public void testCountAttackers() throws Exception {
+        Position position = new Position();
+        position = position.put(e1, WhiteKing);
+        position = position.put(d1, WhiteRook);
+        position = position.put(f3, WhiteKnight);
+        position = position.put(c3, WhitePawn);
+        position = position.put(a7, WhiteBishop);
+        position = position.put(e8, BlackKing);
+        
+        assertEquals(4, position.countAttackers(d4, White));
+        assertEquals(0, position.countAttackers(d4, Black));
+        
+        // a second rook behind the first does not attack yet
+        position = position.put(d2, WhiteRook);
+        assertEquals(4, position.countAttackers(d4, White));
+    }
+    
     public void testClone() throws Exception {
         Position first = new Position();
         first = first.put(e2, WhiteBishop);
@@ -197,4 +295,32 @@ public class PositionTest extends SerializationTest<Position> {
         position = position.put(h1, Piece.WhiteKing);
         assertFalse(position.isInCheck(White));
     }
+    
+    public void testPutReplacesPieceOnOccupiedSquare() throws Exception {
+        Position position = new Position();
+        position = position.put(e4, WhiteKnight);
+        position = position.put(e4, BlackQueen);
+        
+        assertEquals(BlackQueen, position.get(e4));
+        assertEquals(1, position.getPieceLocations().size());
+        assertEquals(new Position().put(e4, BlackQueen), position);
+    }
+    
+    public void testEqualsIgnoresOrderOfPlacement() throws Exception {
+        Position first = new Position().put(e1, WhiteKing).put(e8, BlackKing).put(d4, WhitePawn);
+        Position second = new Position().put(d4, WhitePawn).put(e8, BlackKing).put(e1, WhiteKing);
+        
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+    }
+    
+    public void testZobristKeyFollowsPlacement() throws Exception {
+        Position empty = new Position();
+        Position position = empty.put(e4, WhiteKnight).put(d5, BlackQueen);
+        
+        assertFalse(position.getZobristKey() == empty.getZobristKey());
+        assertEquals(new Position().put(d5, BlackQueen).put(e4, WhiteKnight).getZobristKey(), position.getZobristKey());
+        assertFalse(position.getZobristKey() == empty.put(e4, BlackQueen).put(d5, WhiteKnight).getZobristKey());
+        assertEquals(empty.getZobristKey(), position.put(e4, null).put(d5, null).getZobristKey());
+    }
 }
@@ -6,6 +6,7 @@ import static com.chess.board.Square.c2;
 import static com.chess.board.Square.c4;
 import static com.chess.board.Square.c5;
 import static com.chess.board.Square.c7;
+import static com.chess.board.Square.d8;
 import static com.chess.board.Square.d2;
 import static com.chess.board.Square.d4;
 import static com.chess.board.Square.d5;
@@ -21,11 +22,14 @@ import static com.chess.board.Square.f5;
 import static com.chess.board.Square.f6;
 import static com.chess.board.Square.f7;
 import static com.chess.board.Square.g1;
+import static com.chess.board.Square.g2;
+import static com.chess.board.Square.g4;
+import static com.chess.board.Square.h4;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Set;
 
-import com.chess.util.SerializationTest;
-
 public class PositionTreeTest extends SerializationTest<PositionTree> {
     
     public void testGetMoves() throws Exception {
@@ -99,6 +103,48 @@ public class PositionTreeTest extends SerializationTest<PositionTree> {
         assertSerialize(tree);
     }
     
+    public void testSerializeBeforeDescriptionIsRead() throws Exception {
+        Board board = new Board().move(f2, f3).move(e7, e5).move(g2, g4).move(d8, h4);
+        
+        writeObject(board.getMoveHistory().getCurrentPositionTree());
+        assertEquals("Qh4#", readObject().getMoveDescription());
+    }
+    
+    public void testMoveDescriptionIsWorkedOutWhenRead() throws Exception {
+        Board board = new Board().move(f2, f3).move(e7, e5).move(g2, g4).move(d8, h4);
+        
+        PositionTree tree = board.getMoveHistory().getInitialPosition();
+        StringBuilder descriptions = new StringBuilder();
+        while (!tree.getVariations().isEmpty()) {
+            tree = tree.getVariations().get(0);
+            descriptions.append(tree.getMoveDescription()).append(' ');
+        }
+        assertEquals("1.f3 e5 2.g4 Qh4# ", descriptions.toString());
+    }
+    
+    public void testEqualityDoesNotDescribeMoves() throws Exception {
+        Rules rules = new ChessRules() {
+            
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            public boolean isCheckMate(Board board) {
+                throw new AssertionError("the move was described");
+            }
+        };
+        Board board = new Board();
+        Fen fen = board.getFen();
+        board.move(e2, e4);
+        
+        PositionTree start = new PositionTree(null, null, fen, (String) null);
+        PositionTree first = new PositionTree(start, new Move(e2, e4), board.getFen(), rules);
+        PositionTree second = new PositionTree(start, new Move(e2, e4), board.getFen(), rules);
+        
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals(1, new HashSet<PositionTree>(Arrays.asList(first, second)).size());
+    }
+    
     public void testNAGOrdering() throws Exception {
         Board board = new Board();
         board.move(e2, e4);
@@ -0,0 +1,101 @@
+package com.chess.board;
+
+import static com.chess.board.Square.a1;
+import static com.chess.board.Square.a7;
+import static com.chess.board.Square.a8;
+import static com.chess.board.Square.b1;
+import static com.chess.board.Square.b8;
+import static com.chess.board.Square.c1;
+import static com.chess.board.Square.c3;
+import static com.chess.board.Square.d5;
+import static com.chess.board.Square.e1;
+import static com.chess.board.Square.e2;
+import static com.chess.board.Square.e3;
+import static com.chess.board.Square.e4;
+import static com.chess.board.Square.e5;
+import static com.chess.board.Square.e7;
+import static com.chess.board.Square.f3;
+import static com.chess.board.Square.g1;
+import static com.chess.board.Square.h1;
+import static com.chess.board.Square.h8;
+
+import junit.framework.TestCase;
+
+public class SanParserTest extends TestCase {
+    
+    private final ChessRules rules = new ChessRules();
+    
+    public void testPawnAndPieceMoves() throws Exception {
+        Fen fen = Fen.getDefaultFen();
+        assertEquals(new Move(e2, e4), parse("e4", fen));
+        assertEquals(new Move(g1, f3), parse("Nf3", fen));
+        assertEquals(new Move(g1, f3), parse("Ng1-f3", fen));
+        assertEquals(new Move(e2, e4), parse("e2e4", fen));
+    }
+    
+    public void testCaptureAndDisambiguation() throws Exception {
+        Fen fen = new Fen("4k3/8/8/3p4/8/2N1N3/8/4K3 w - - 0 1");
+        assertEquals(new Move(c3, d5), parse("Ncxd5", fen));
+        assertEquals(new Move(e3, d5), parse("Nexd5+", fen));
+        try {
+            parse("Nxd5", fen);
+            fail("two knights can take on d5");
+        }
+        catch (IllegalMoveException expected) {
+        }
+    }
+    
+    public void testPromotion() throws Exception {
+        Fen fen = new Fen("1n2k3/P7/8/8/8/8/8/4K3 w - - 0 1");
+        assertEquals(new Move(a7, a8, Promotion.Knight), parse("a8=N", fen));
+        assertEquals(new Move(a7, b8, Promotion.Rook), parse("axb8R+", fen));
+        assertEquals(new Move(a7, a8, Promotion.Queen), parse("a8", fen));
+    }
+    
+    public void testCastling() throws Exception {
+        Fen fen = new Fen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        assertEquals(new Move(e1, g1), parse("O-O", fen));
+        assertEquals(new Move(e1, c1), parse("0-0-0", fen));
+        assertEquals(new Move(e1, g1), parse("Kg1", fen));
+        assertEquals(new Move(a1, b1), parse("Rb1", fen));
+        assertEquals(new Move(h1, h8), parse("Rxh8+", fen));
+    }
+    
+    public void testIllegalMovesAreReported() throws Exception {
+        Fen fen = Fen.getDefaultFen();
+        for (String san : new String[] { "e5", "Ke2", "O-O", "", "x", "Zf3", "b7" }) {
+            try {
+                parse(san, fen);
+                fail(san + " is not legal");
+            }
+            catch (IllegalMoveException expected) {
+            }
+        }
+    }
+    
+    public void testGetMoveEnd() throws Exception {
+        assertEquals(3, SanParser.getMoveEnd("Nf3!?"));
+        assertEquals(5, SanParser.getMoveEnd("c8=Q+"));
+        assertEquals(4, SanParser.getMoveEnd("exf6 e.p."));
+        assertEquals(4, SanParser.getMoveEnd("Qh5#"));
+        assertEquals(2, SanParser.getMoveEnd("e4+-"));
+        assertEquals(2, SanParser.getMoveEnd("e4="));
+    }
+    
+    public void testMoveAlgebraicAddsAnnotation() throws Exception {
+        Board board = new Board();
+        board.moveAlgebraic("e4!?");
+        board.moveAlgebraic("e5+/-");
+        
+        assertEquals(new Move(e2, e4), board.getMoveHistory().getMainLine().get(0));
+        assertEquals(new Move(e7, e5), board.getLastMove());
+        assertTrue(board.getMoveHistory().getCurrentPositionTree().getNAGs().contains(NAG.moderateAdvantageWhite));
+        board.undoMove();
+        assertEquals(1, board.getMoveHistory().getCurrentPositionTree().getNAGs().size());
+        assertTrue(board.getMoveHistory().getCurrentPositionTree().getNAGs().contains(NAG.interestingMove));
+    }
+    
+    private Move parse(String san, Fen fen) throws IllegalMoveException {
+        return MoveEncoding.decode(SanParser.parse(san, fen.getPosition(), rules.getLegalMoveList(fen)));
+    }
+}
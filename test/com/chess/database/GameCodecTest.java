@@ -0,0 +1,90 @@
+package com.chess.database;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import junit.framework.TestCase;
+
+import com.chess.board.Board;
+import com.chess.board.Fen;
+import com.chess.board.MoveHistory;
+import com.chess.pgn.PgnReader;
+import com.chess.pgn.PgnWriter;
+
+public class GameCodecTest extends TestCase {
+    
+    private static final String OPERA_GAME = "1. e4 e5 2. Nf3 d6 3. d4 Bg4 4. dxe5 Bxf3 5. Qxf3 dxe5 6. Bc4 Nf6 7. Qb3 Qe7\n"
+                                             + "8. Nc3 c6 9. Bg5 b5 10. Nxb5 cxb5 11. Bxb5+ Nbd7 12. O-O-O Rd8 13. Rxd7 Rxd7\n"
+                                             + "14. Rd1 Qe6 15. Bxd7+ Nxd7 16. Qb8+ Nxb8 17. Rd8# 1-0";
+    
+    private final GameCodec codec = new GameCodec();
+    
+    public void testOneBytePerMove() throws Exception {
+        MoveHistory history = read(OPERA_GAME).getMoveHistory();
+        byte[] encoded = codec.encode(history);
+        
+        // version, start position, 33 moves and the end marker
+        assertEquals(36, encoded.length);
+        assertEquals(history.getMainLine(), codec.decode(encoded).getMoveHistory().getMainLine());
+    }
+    
+    public void testVariationsCommentsAndNAGs() throws Exception {
+        Board board = read("{Start} 1. e4 {best} e5 (1... c5 $14 {Sicilian: \u00fc} 2. Nf3 (2. c3) d6) (1... e6) 2. Nf3 $1 Nc6 *");
+        
+        Board decoded = codec.decode(codec.encode(board.getMoveHistory()));
+        assertEquals(write(board), write(decoded));
+    }
+    
+    public void testSetUpPosition() throws Exception {
+        Board board = new Board(new Fen("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"));
+        board.moveAlgebraic("e4");
+        board.moveAlgebraic("Kg5");
+        
+        Board decoded = codec.decode(codec.encode(board.getMoveHistory()));
+        assertEquals(board.getMoveHistory().getInitialPosition().getFen(),
+                     decoded.getMoveHistory().getInitialPosition().getFen());
+        assertEquals(board.getFen(), decoded.getFen());
+    }
+    
+    public void testDecodesGamesOneAfterAnother() throws Exception {
+        byte[] first = codec.encode(read("1. d4 d5 *").getMoveHistory());
+        byte[] second = codec.encode(read(OPERA_GAME).getMoveHistory());
+        ByteBuffer buffer = ByteBuffer.allocate(first.length + second.length).put(first).put(second);
+        buffer.flip();
+        
+        assertEquals(2, codec.decode(buffer).getMoveHistory().getMainLine().size());
+        assertEquals(33, codec.decode(buffer).getMoveHistory().getMainLine().size());
+        assertFalse(buffer.hasRemaining());
+    }
+    
+    public void testCorruptGames() throws Exception {
+        byte[] encoded = codec.encode(read(OPERA_GAME).getMoveHistory());
+        assertCorrupt(new byte[] { 2, 0, (byte) GameCodec.END_OF_GAME });
+        assertCorrupt(new byte[] { 1, 0, (byte) 200, (byte) GameCodec.END_OF_GAME });
+        assertCorrupt(new byte[] { 1, 0, (byte) GameCodec.START_VARIATION, (byte) GameCodec.END_OF_GAME });
+        assertCorrupt(Arrays.copyOf(encoded, encoded.length - 1));
+        assertCorrupt(new byte[] { 1, 0, 0, (byte) GameCodec.NAG_MARKER, (byte) 250, (byte) GameCodec.END_OF_GAME });
+    }
+    
+    private void assertCorrupt(byte[] game) {
+        try {
+            codec.decode(game);
+            fail("decoded a corrupt game");
+        }
+        catch (GameFormatException expected) {
+        }
+    }
+    
+    private Board read(String pgn) throws Exception {
+        return new PgnReader(new StringReader(pgn)).readGame().getBoard();
+    }
+    
+    private String write(Board board) throws Exception {
+        StringWriter out = new StringWriter();
+        new PgnWriter(out).writeGame(new LinkedHashMap<String, String>(), board.getMoveHistory().getInitialPosition(), null);
+        return out.toString();
+    }
+}
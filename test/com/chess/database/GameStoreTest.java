@@ -0,0 +1,101 @@
+package com.chess.database;
+
+import static com.chess.board.Square.e2;
+import static com.chess.board.Square.e4;
+
+import java.io.File;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import com.chess.board.Board;
+import com.chess.board.Fen;
+import com.chess.board.MoveHistory;
+import com.chess.pgn.PgnReader;
+
+public class GameStoreTest extends TestCase {
+    
+    private File file;
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("games", ".db");
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        file.delete();
+        new File(file.getPath() + ".index").delete();
+    }
+    
+    public void testGamesAreFetchedById() throws Exception {
+        GameStore store = new GameStore(file);
+        try {
+            assertEquals(0, store.add(read("1. e4 e5 2. Nf3 *")));
+            assertEquals(1, store.add(read("1. d4 (1. c4) 1... Nf6 {Indian} *")));
+            assertEquals(2, store.add(new Board(new Fen("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1")).move(e2, e4).getMoveHistory()));
+            
+            assertEquals(3, store.getGame(0).getMoveHistory().getMainLine().size());
+            assertEquals("Indian", store.getGame(1).getMoveHistory().getEndOfMainLine().getComment());
+            assertEquals(new Fen("4k3/8/8/8/4P3/8/8/4K3 b - e3 0 1"), store.getGame(2).getFen());
+        }
+        finally {
+            store.close();
+        }
+    }
+    
+    public void testReopenedStoreKeepsItsGames() throws Exception {
+        GameStore store = new GameStore(file);
+        for (int i = 0; i < 100; i++) {
+            store.add(read(i % 2 == 0 ? "1. e4 *" : "1. d4 d5 *"));
+        }
+        store.close();
+        
+        store = new GameStore(file);
+        try {
+            assertEquals(100, store.size());
+            assertEquals(2, store.getGame(99).getMoveHistory().getMainLine().size());
+            assertEquals(1, store.getGame(98).getMoveHistory().getMainLine().size());
+            
+            // games added after reading are visible too
+            assertEquals(100, store.add(read("1. c4 e5 2. Nc3 *")));
+            assertEquals(3, store.getGame(100).getMoveHistory().getMainLine().size());
+        }
+        finally {
+            store.close();
+        }
+    }
+    
+    public void testReadingWhileAdding() throws Exception {
+        GameStore store = new GameStore(file);
+        try {
+            for (int i = 0; i < 200; i++) {
+                assertEquals(i, store.add(read(i % 2 == 0 ? "1. e4 *" : "1. d4 d5 *")));
+                assertEquals(i % 2 + 1, store.getGame(i).getMoveHistory().getMainLine().size());
+                assertEquals(1, store.getGame(i / 2 * 2).getMoveHistory().getMainLine().size());
+            }
+        }
+        finally {
+            store.close();
+        }
+    }
+    
+    public void testUnknownGame() throws Exception {
+        GameStore store = new GameStore(file);
+        try {
+            store.getGame(0);
+            fail("the store is empty");
+        }
+        catch (IndexOutOfBoundsException expected) {
+        }
+        finally {
+            store.close();
+        }
+    }
+    
+    private MoveHistory read(String pgn) throws Exception {
+        return new PgnReader(new StringReader(pgn)).readGame().getMoveHistory();
+    }
+}
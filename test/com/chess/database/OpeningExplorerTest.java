@@ -0,0 +1,81 @@
+package com.chess.database;
+
+import static com.chess.board.Square.c7;
+import static com.chess.board.Square.c5;
+import static com.chess.board.Square.d2;
+import static com.chess.board.Square.d4;
+import static com.chess.board.Square.e2;
+import static com.chess.board.Square.e4;
+import static com.chess.board.Square.e7;
+import static com.chess.board.Square.e5;
+
+import java.io.StringReader;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.chess.board.Board;
+import com.chess.board.Fen;
+import com.chess.board.Move;
+import com.chess.database.OpeningExplorer.MoveStatistics;
+import com.chess.pgn.PgnImporter;
+import com.chess.pgn.PgnReader;
+
+public class OpeningExplorerTest extends TestCase {
+    
+    private static final String GAMES = "[WhiteElo \"2400\"]\n[BlackElo \"2200\"]\n[Result \"1-0\"]\n\n1. e4 e5 2. Nf3 1-0\n\n"
+                                        + "[WhiteElo \"2000\"]\n[BlackElo \"?\"]\n[Result \"0-1\"]\n\n1. e4 c5 0-1\n\n"
+                                        + "[Result \"1/2-1/2\"]\n\n1. e4 e5 2. Nc3 1/2-1/2\n\n"
+                                        + "[Result \"*\"]\n\n1. d4 *\n\n";
+    
+    public void testCountsMovesResultsAndRatings() throws Exception {
+        OpeningExplorer explorer = new OpeningExplorer();
+        assertEquals(4, new PgnReader(new StringReader(GAMES)).readGames(explorer));
+        
+        List<MoveStatistics> moves = explorer.getMoves(Fen.getDefaultFen());
+        assertEquals(2, moves.size());
+        
+        MoveStatistics kingsPawn = moves.get(0);
+        assertEquals(new Move(e2, e4), kingsPawn.getMove());
+        assertEquals(3, kingsPawn.getGames());
+        assertEquals(1, kingsPawn.getWhiteWins());
+        assertEquals(1, kingsPawn.getDraws());
+        assertEquals(1, kingsPawn.getBlackWins());
+        assertEquals(2200, kingsPawn.getAverageRating());
+        
+        MoveStatistics queensPawn = moves.get(1);
+        assertEquals(new Move(d2, d4), queensPawn.getMove());
+        assertEquals(1, queensPawn.getGames());
+        assertEquals(0, queensPawn.getWhiteWins() + queensPawn.getDraws() + queensPawn.getBlackWins());
+        assertEquals(0, queensPawn.getAverageRating());
+        
+        List<MoveStatistics> replies = explorer.getMoves(new Board().move(e2, e4).getFen());
+        assertEquals(new Move(e7, e5), replies.get(0).getMove());
+        assertEquals(2, replies.get(0).getGames());
+        assertEquals(new Move(c7, c5), replies.get(1).getMove());
+        
+        assertTrue(explorer.getMoves(new Board().move(d2, d4).getFen()).isEmpty());
+    }
+    
+    public void testOnlyTheOpeningIsCounted() throws Exception {
+        OpeningExplorer explorer = new OpeningExplorer(1);
+        new PgnReader(new StringReader(GAMES)).readGames(explorer);
+        
+        assertEquals(1, explorer.size());
+        assertTrue(explorer.getMoves(new Board().move(e2, e4).getFen()).isEmpty());
+    }
+    
+    public void testParallelImport() throws Exception {
+        StringBuilder pgn = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            pgn.append(GAMES);
+        }
+        
+        OpeningExplorer explorer = new OpeningExplorer();
+        new PgnImporter(4).importGames(new StringReader(pgn.toString()), explorer);
+        
+        MoveStatistics kingsPawn = explorer.getMoves(Fen.getDefaultFen()).get(0);
+        assertEquals(600, kingsPawn.getGames());
+        assertEquals(200, kingsPawn.getWhiteWins());
+    }
+}
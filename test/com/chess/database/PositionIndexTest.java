@@ -0,0 +1,102 @@
+package com.chess.database;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.chess.board.Board;
+import com.chess.board.Fen;
+import com.chess.database.PositionIndex.Occurrence;
+import com.chess.pgn.PgnReader;
+
+public class PositionIndexTest extends TestCase {
+    
+    private static final String[] GAMES = {
+        "1. e4 e5 2. Nf3 Nc6 3. Bb5 *",
+        "1. Nf3 Nc6 2. e4 e5 3. Bc4 *",
+        "1. d4 d5 2. c4 *",
+        "1. e4 c5 2. Nf3 *",
+        "1. e4 e5 2. Nf3 Nc6 3. Bc4 *"
+    };
+    
+    private File file;
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("positions", ".index");
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        file.delete();
+    }
+    
+    public void testFindsTranspositions() throws Exception {
+        PositionIndex index = build(1 << 10);
+        try {
+            assertEquals(Arrays.asList(new Occurrence(0, 4), new Occurrence(1, 4), new Occurrence(4, 4)),
+                         index.find(fenAfter("1. e4 e5 2. Nf3 Nc6 *")));
+            assertTrue(Arrays.equals(new int[] { 1, 4 }, index.findGames(fenAfter("1. e4 e5 2. Nf3 Nc6 3. Bc4 *"))));
+            assertTrue(Arrays.equals(new int[] { 0, 1, 2, 3, 4 }, index.findGames(Fen.getDefaultFen())));
+            assertEquals(0, index.findGames(fenAfter("1. h4 *")).length);
+        }
+        finally {
+            index.close();
+        }
+    }
+    
+    public void testMergedRunsGiveTheSameIndex() throws Exception {
+        PositionIndex inMemory = build(1 << 10);
+        List<Occurrence> expected = inMemory.find(fenAfter("1. e4 *"));
+        long size = inMemory.size();
+        inMemory.close();
+        
+        // three records a run, so building writes and merges several runs
+        PositionIndex merged = build(3);
+        try {
+            assertEquals(size, merged.size());
+            assertEquals(expected, merged.find(fenAfter("1. e4 *")));
+            assertEquals(Arrays.asList(new Occurrence(2, 3)), merged.find(fenAfter("1. d4 d5 2. c4 *")));
+        }
+        finally {
+            merged.close();
+        }
+        
+        String prefix = file.getName();
+        for (File other : file.getAbsoluteFile().getParentFile().listFiles()) {
+            assertFalse(other.getName(), other.getName().startsWith(prefix) && other.getName().endsWith(".run"));
+        }
+    }
+    
+    public void testEmptyIndex() throws Exception {
+        PositionIndex index = new PositionIndex.Builder(file).build();
+        try {
+            assertEquals(0, index.size());
+            assertTrue(index.find(Fen.getDefaultFen()).isEmpty());
+        }
+        finally {
+            index.close();
+        }
+    }
+    
+    private PositionIndex build(int runLength) throws Exception {
+        PositionIndex.Builder builder = new PositionIndex.Builder(file, runLength);
+        for (int i = 0; i < GAMES.length; i++) {
+            builder.addGame(i, read(GAMES[i]).getMoveHistory());
+        }
+        return builder.build();
+    }
+    
+    private Fen fenAfter(String pgn) throws Exception {
+        return read(pgn).getFen();
+    }
+    
+    private Board read(String pgn) throws Exception {
+        return new PgnReader(new StringReader(pgn)).readGame().getBoard();
+    }
+}
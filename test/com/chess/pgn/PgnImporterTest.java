@@ -0,0 +1,78 @@
+package com.chess.pgn;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class PgnImporterTest extends TestCase {
+    
+    public void testImportsEveryGameOnSeveralThreads() throws Exception {
+        StringBuilder pgn = new StringBuilder();
+        for (int i = 0; i < 150; i++) {
+            pgn.append("[Round \"").append(i).append("\"]\n[Result \"1/2-1/2\"]\n\n");
+            pgn.append("1. Nf3 Nf6 2. Ng1 Ng8 3. Nf3 Nf6 4. Ng1 Ng8 1/2-1/2\n\n");
+        }
+        pgn.append("[Round \"broken\"]\n\n1. e4 e5 2. Ke3 *\n");
+        
+        final Set<String> rounds = Collections.synchronizedSet(new HashSet<String>());
+        PgnImporter.ImportStatistics statistics = new PgnImporter(4).importGames(new StringReader(pgn.toString()),
+                                                                              new PgnGameListener() {
+            
+            @Override
+            public void acceptGame(PgnGame game) {
+                assertEquals(8, game.getMoveHistory().getMainLine().size());
+                rounds.add(game.getHeader("Round"));
+            }
+        });
+        
+        assertEquals(150, statistics.getGames());
+        assertEquals(1, statistics.getErrors());
+        assertEquals(150, rounds.size());
+        assertTrue(statistics.getGamesPerSecond() > 0);
+    }
+    
+    public void testListenerFailureIsRethrown() throws Exception {
+        try {
+            new PgnImporter(2).importGames(new StringReader("1. e4 *\n\n[White \"B\"]\n\n1. d4 *\n"), new PgnGameListener() {
+                
+                @Override
+                public void acceptGame(PgnGame game) {
+                    throw new IllegalStateException("listener failed");
+                }
+            });
+            fail();
+        }
+        catch (IllegalStateException ise) {
+            assertEquals("listener failed", ise.getMessage());
+        }
+    }
+    
+    public void testListenerErrorIsRethrown() throws Exception {
+        try {
+            new PgnImporter(2).importGames(new StringReader("1. e4 *\n"), new PgnGameListener() {
+                
+                @Override
+                public void acceptGame(PgnGame game) {
+                    throw new AssertionError("listener failed");
+                }
+            });
+            fail();
+        }
+        catch (AssertionError ae) {
+            assertEquals("listener failed", ae.getMessage());
+        }
+    }
+    
+    public void testSplitterKeepsTagLikeLinesInComments() throws Exception {
+        PgnImporter.PgnSplitter splitter = new PgnImporter.PgnSplitter(new StringReader(
+                "[White \"A\"]\n\n1. e4 {a comment\n[with a bracket]} e5 *\n[White \"B\"]\n\n1. d4 ; {\n[Black \"C\"]\n1. c4 *\n"));
+        
+        assertEquals("[White \"A\"]\n\n1. e4 {a comment\n[with a bracket]} e5 *\n", splitter.nextGame());
+        assertEquals("[White \"B\"]\n\n1. d4 ; {\n", splitter.nextGame());
+        assertEquals("[Black \"C\"]\n1. c4 *\n", splitter.nextGame());
+        assertNull(splitter.nextGame());
+    }
+}
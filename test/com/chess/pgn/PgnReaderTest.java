@@ -0,0 +1,117 @@
+package com.chess.pgn;
+
+import static com.chess.board.Square.c5;
+import static com.chess.board.Square.c7;
+import static com.chess.board.Square.e2;
+import static com.chess.board.Square.e4;
+import static com.chess.board.Square.e5;
+import static com.chess.board.Square.e7;
+import static com.chess.board.Square.e8;
+import static com.chess.board.Square.g1;
+import static com.chess.board.Square.f3;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.chess.board.Move;
+import com.chess.board.NAG;
+import com.chess.board.Piece;
+import com.chess.board.PositionTree;
+import com.chess.board.Promotion;
+
+public class PgnReaderTest extends TestCase {
+    
+    private static final String OPERA_GAME = "[Event \"Paris\"]\n[White \"Morphy, Paul\"]\n[Black \"Duke Karl / Count Isouard\"]\n"
+                                             + "[Result \"1-0\"]\n\n"
+                                             + "1. e4 e5 2. Nf3 d6 3. d4 Bg4 4. dxe5 Bxf3 5. Qxf3 dxe5 6. Bc4 Nf6 7. Qb3 Qe7\n"
+                                             + "8. Nc3 c6 9. Bg5 b5 10. Nxb5 cxb5 11. Bxb5+ Nbd7 12. O-O-O Rd8 13. Rxd7 Rxd7\n"
+                                             + "14. Rd1 Qe6 15. Bxd7+ Nxd7 16. Qb8+ Nxb8 17. Rd8# 1-0\n";
+    
+    public void testReadsHeadersAndMainLine() throws Exception {
+        PgnReader reader = new PgnReader(new StringReader(OPERA_GAME));
+        PgnGame game = reader.readGame();
+        
+        assertEquals("Morphy, Paul", game.getHeader("White"));
+        assertEquals(Arrays.asList("Event", "White", "Black", "Result"), new ArrayList<String>(game.getHeaders().keySet()));
+        assertEquals("1-0", game.getResult());
+        assertEquals(33, game.getMoveHistory().getMainLine().size());
+        assertEquals("17.Rd8#", game.getBoard().getLastMoveDescription());
+        assertNull(reader.readGame());
+    }
+    
+    public void testReadsVariationsCommentsAndNAGs() throws Exception {
+        PgnGame game = read("1. e4 {best by test} e5 (1... c5 $14 {Sicilian} (1... e6) 2. Nf3) 2. Nf3! *");
+        
+        assertEquals(Arrays.asList(new Move(e2, e4), new Move(e7, e5), new Move(g1, f3)), game.getMoveHistory().getMainLine());
+        assertEquals("*", game.getResult());
+        
+        PositionTree e4Tree = game.getMoveHistory().getInitialPosition().getVariations().get(0);
+        assertEquals("best by test", e4Tree.getComment());
+        assertEquals(3, e4Tree.getVariations().size());
+        
+        PositionTree sicilian = e4Tree.getVariation(new Move(c7, c5));
+        assertEquals("Sicilian", sicilian.getComment());
+        assertTrue(sicilian.getNAGs().contains(NAG.slightAdvantageWhite));
+        assertEquals(1, sicilian.getVariations().size());
+        
+        PositionTree nf3 = e4Tree.getVariation(new Move(e7, e5)).getVariations().get(0);
+        assertTrue(nf3.getNAGs().contains(NAG.goodMove));
+        assertEquals(nf3, game.getMoveHistory().getCurrentPositionTree());
+    }
+    
+    public void testReadsSetUpPositionAndPromotion() throws Exception {
+        PgnGame game = read("[FEN \"8/4P1k1/8/8/8/8/8/4K3 w - - 0 60\"]\n\n60. e8=Q Kf6 61. Qe5+ 1-0");
+        
+        assertEquals(Piece.WhiteQueen, game.getBoard().getPieceAt(e5));
+        assertEquals(new Move(e7, e8, Promotion.Queen), game.getMoveHistory().getMainLine().get(0));
+        assertTrue(game.getMoveHistory().getMainLine().get(0).getPromotionPiece() == Promotion.Queen);
+        assertTrue(game.getMoveHistory().getInitialPosition().getVariations().get(0).getNAGs().isEmpty());
+    }
+    
+    public void testReadsEveryGame() throws Exception {
+        // the second game has no result, the third game's tags end it
+        String pgn = OPERA_GAME + "\n[White \"A\"]\n\n1. d4 d5\n\n[White \"B\"]\n\n1. c4 ; English\n0-1\n";
+        final List<PgnGame> games = new ArrayList<PgnGame>();
+        int count = new PgnReader(new StringReader(pgn)).readGames(new PgnGameListener() {
+            
+            @Override
+            public void acceptGame(PgnGame game) {
+                games.add(game);
+            }
+        });
+        
+        assertEquals(3, count);
+        assertEquals(2, games.get(1).getMoveHistory().getMainLine().size());
+        assertEquals("*", games.get(1).getResult());
+        assertEquals("English", games.get(2).getMoveHistory().getCurrentPositionTree().getComment());
+        assertEquals("0-1", games.get(2).getResult());
+    }
+    
+    public void testSkipsGameWithIllegalMove() throws Exception {
+        PgnReader reader = new PgnReader(new StringReader("[White \"A\"]\n\n1. e4 e5 2. Ke3 (2. Nf3) Nc6 1-0\n\n"
+                                                          + "[White \"B\"]\n\n1. e4 c5 *\n"));
+        try {
+            reader.readGame();
+            fail();
+        }
+        catch (PGNFormatException pfe) {
+        }
+        
+        PgnGame game = reader.readGame();
+        assertEquals("B", game.getHeader("White"));
+        assertEquals(new Move(c7, c5), game.getBoard().getLastMove());
+        assertNull(reader.readGame());
+    }
+    
+    public void testEmptyInput() throws Exception {
+        assertNull(new PgnReader(new StringReader("  \n")).readGame());
+    }
+    
+    private PgnGame read(String pgn) throws Exception {
+        return new PgnReader(new StringReader(pgn)).readGame();
+    }
+}
@@ -0,0 +1,83 @@
+package com.chess.pgn;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.chess.board.Board;
+import com.chess.board.Fen;
+
+public class PgnWriterTest extends TestCase {
+    
+    public void testWritesVariationsCommentsAndNAGs() throws Exception {
+        String pgn = "[Event \"Test\"]\n[Result \"*\"]\n\n"
+                     + "{Start} 1. e4 {best} 1... e5 (1... c5 $14 {Sicilian} 2. Nf3) (1... e6) 2. Nf3 $1\n"
+                     + "Nc6 3. Bb5 a6 *\n\n";
+        
+        assertEquals(pgn, write(read(pgn)));
+    }
+    
+    public void testDoesNotNumberBlackReplyInWhiteVariation() throws Exception {
+        String pgn = "[Event \"Test\"]\n[Result \"*\"]\n\n"
+                     + "1. e4 e5 2. Nf3 (2. d4 exd4 3. Qxd4) 2... Nc6 *\n\n";
+        
+        assertEquals(pgn, write(read(pgn)));
+    }
+    
+    public void testRoundTripKeepsTheGame() throws Exception {
+        PgnGame game = read("[White \"Morphy, Paul\"]\n[Result \"1-0\"]\n\n"
+                            + "1. e4 e5 2. Nf3 d6 3. d4 Bg4 4. dxe5 Bxf3 5. Qxf3 dxe5 6. Bc4 Nf6 7. Qb3 Qe7\n"
+                            + "8. Nc3 c6 9. Bg5 b5 10. Nxb5 cxb5 11. Bxb5+ Nbd7 12. O-O-O Rd8 13. Rxd7 Rxd7\n"
+                            + "14. Rd1 Qe6 15. Bxd7+ Nxd7 16. Qb8+ Nxb8 17. Rd8# 1-0\n");
+        
+        String written = write(game);
+        for (String line : written.split("\n")) {
+            assertTrue(line, line.length() <= 80);
+        }
+        
+        PgnGame reread = read(written);
+        assertEquals(game.getHeaders(), reread.getHeaders());
+        assertEquals(game.getMoveHistory().getMainLine(), reread.getMoveHistory().getMainLine());
+        assertEquals(game.getBoard().getFen(), reread.getBoard().getFen());
+    }
+    
+    public void testWritesFenForSetUpPositions() throws Exception {
+        Board board = new Board(new Fen("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 0 1"));
+        board.moveAlgebraic("Rxb5");
+        board.moveAlgebraic("Kxb5");
+        
+        StringWriter out = new StringWriter();
+        new PgnWriter(out).writeGame(new LinkedHashMap<String, String>(), board.getMoveHistory().getInitialPosition(), null);
+        assertEquals("[Result \"*\"]\n[SetUp \"1\"]\n[FEN \"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 0 1\"]\n\n"
+                     + "1... Rxb5+ 2. Kxb5 *\n\n", out.toString());
+    }
+    
+    public void testEscapesTagValues() throws Exception {
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Event", "The \"Immortal\" game");
+        
+        StringWriter out = new StringWriter();
+        new PgnWriter(out).writeGame(headers, new Board().getMoveHistory().getInitialPosition(), "1-0");
+        assertEquals("The \"Immortal\" game", read(out.toString()).getHeader("Event"));
+    }
+    
+    public void testGetSan() throws Exception {
+        assertEquals("Nf3", PgnWriter.getSan("12.Nf3"));
+        assertEquals("dxe6", PgnWriter.getSan("dxe6 ep."));
+        assertEquals("O-O-O+", PgnWriter.getSan("7.O-O-O+"));
+        assertEquals("e8=Q", PgnWriter.getSan("e8=Q"));
+    }
+    
+    private PgnGame read(String pgn) throws Exception {
+        return new PgnReader(new StringReader(pgn)).readGame();
+    }
+    
+    private String write(PgnGame game) throws Exception {
+        StringWriter out = new StringWriter();
+        new PgnWriter(out).writeGame(game);
+        return out.toString();
+    }
+}